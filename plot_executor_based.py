@@ -3,6 +3,7 @@ import matplotlib.pyplot as plt
 from collections import defaultdict
 from statistics import mean 
 import os
+from plot_metrics import read_metrics, plot_metrics
 
 data = defaultdict(list)
 
@@ -15,7 +16,7 @@ with open('./output/executor_based.csv', newline='') as csvfile:
     reader = csv.DictReader(csvfile, delimiter=';')
     for row in reader:
         key = (row["Image"], row["Filter"])
-        data[key].append((int(row["Number of Threads"]), row["Image Division Method"], int(row["Threshold(px)"]), float(row["Time(ms)"])))
+        data[key].append((int(row["Number of Threads"]), row["Image Division Method"], int(row["Threshold(px)"]), float(row["Time(ms)"]), read_metrics(row)))
 
 for key, image_data in data.items():
     image, filter_name = key
@@ -27,7 +28,7 @@ for key, image_data in data.items():
     
     for thread_count in threads:
         for division_method in division_methods:
-            subset = [(threshold, time) for thread, div_method, threshold, time in image_data if thread == thread_count and div_method == division_method]
+            subset = [(threshold, time) for thread, div_method, threshold, time, _ in image_data if thread == thread_count and div_method == division_method]
             thresholds, times = zip(*subset)
             
             thresholds = (thresholds[0], thresholds[3], thresholds[6])
@@ -45,4 +46,10 @@ for key, image_data in data.items():
 
     output_file = os.path.join(output_dir, f"{os.path.splitext(os.path.basename(image))[0]}_{filter_name}_plot.png")
     plt.savefig(output_file, dpi=300)
-    plt.close()
\ No newline at end of file
+    plt.close()
+
+for key, image_data in data.items():
+    image, filter_name = key
+    entries = [(f"{thread} Threads ({div_method})", threshold, metrics) for thread, div_method, threshold, _, metrics in image_data]
+    output_file = os.path.join(output_dir, f"{os.path.splitext(os.path.basename(image))[0]}_{filter_name}_metrics.png")
+    plot_metrics(entries, "Threshold (px)", f"Engine Metrics vs Threshold for Different Division Methods p/Threads\n {os.path.basename(image)} ({filter_name})", output_file)
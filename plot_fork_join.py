@@ -2,6 +2,7 @@ import csv
 import matplotlib.pyplot as plt
 from statistics import mean 
 import os
+from plot_metrics import read_metrics, plot_metrics
 
 data = {}
 
@@ -20,7 +21,8 @@ with open('./output/fork_join.csv', newline='') as csvfile:
             "method": row["Method"],
             "division_method": row["Image Division Method"],
             "threshold": int(row["Threshold(px)"]),
-            "time_ms": float(row["Time(ms)"])
+            "time_ms": float(row["Time(ms)"]),
+            "metrics": read_metrics(row)
         })
 
 for key, image_data in data.items():
@@ -47,4 +49,10 @@ for key, image_data in data.items():
 
     output_file = os.path.join(output_dir, f"{os.path.splitext(os.path.basename(image))[0]}_{filter_name}_plot.png")
     plt.savefig(output_file)
-    plt.close()
\ No newline at end of file
+    plt.close()
+
+for key, image_data in data.items():
+    image, filter_name = key
+    entries = [(entry["division_method"], entry["threshold"], entry["metrics"]) for entry in image_data]
+    output_file = os.path.join(output_dir, f"{os.path.splitext(os.path.basename(image))[0]}_{filter_name}_metrics.png")
+    plot_metrics(entries, "Threshold (px)", f"Engine Metrics vs Threshold for Different Division Methods\n {os.path.basename(image)} ({filter_name})", output_file)
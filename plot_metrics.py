@@ -0,0 +1,37 @@
+import matplotlib.pyplot as plt
+from collections import defaultdict
+from statistics import mean
+
+# the columns written by the drivers after the parameters of a run, see EngineMetrics.CSV_HEADER
+METRICS = ["Tasks", "Task p50(us)", "Task p99(us)", "Task max(us)",
+           "Chunk p50(px)", "Chunk max(px)", "Steals", "Queue depth p50",
+           "Queue depth max", "Idle time(ms)", "GC pauses", "GC time(ms)"]
+
+
+def read_metrics(row):
+    return {name: float(row[name]) for name in METRICS}
+
+
+def plot_metrics(entries, x_label, title, output_file):
+    """
+    Plots every engine metric against a parameter of the runs, one subplot per metric.
+    entries is a list of (series, x, metrics) tuples, the runs of a series with the same x are averaged.
+    """
+    fig, axes = plt.subplots(3, 4, figsize=(16, 10))
+    series = sorted(set(entry[0] for entry in entries))
+    for ax, name in zip(axes.flat, METRICS):
+        for label in series:
+            values = defaultdict(list)
+            for entry_series, x, metrics in entries:
+                if entry_series == label:
+                    values[x].append(metrics[name])
+            xs = sorted(values)
+            ax.plot(xs, [mean(values[x]) for x in xs], marker="o", label=label)
+        ax.set_title(name, fontsize=9)
+        ax.set_xlabel(x_label, fontsize=8)
+        ax.grid(True)
+    axes.flat[0].legend(fontsize=6)
+    fig.suptitle(title)
+    fig.tight_layout()
+    fig.savefig(output_file, dpi=150)
+    plt.close(fig)
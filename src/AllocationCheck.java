@@ -0,0 +1,40 @@
+import filters.FilterFactory;
+import models.FiltersEnum;
+import models.PixelBuffer;
+import utils.AllocationAnalyzer;
+import utils.ImageUtils;
+
+import java.util.List;
+
+public class AllocationCheck {
+    public static void main(String[] args) {
+        // GENERAL CONFIG
+        final List<FiltersEnum> filtersConf = List.of(FiltersEnum.values());
+        // a single object per pixel would already cost more than this
+        final double MAX_BYTES_PER_PIXEL = 1.0;
+
+        // FILES PATH
+        final String inputDirPath = "./input/";
+
+        // IMAGES TO PROCESS
+        final List<String> imgPathList = List.of(inputDirPath + "turtle.jpg", inputDirPath + "monkey.png", inputDirPath + "bridge.jpg");
+
+        AllocationAnalyzer allocationAnalyzer = new AllocationAnalyzer();
+        boolean failed = false;
+
+        for (String imgPath : imgPathList) {
+            PixelBuffer image = ImageUtils.loadPixels(imgPath);
+
+            for (var filter : filtersConf) {
+                double bytesPerPixel = allocationAnalyzer.bytesPerPixel(FilterFactory.of(filter), image, filter.defaultAmount());
+                boolean ok = bytesPerPixel < MAX_BYTES_PER_PIXEL;
+                failed |= !ok;
+                System.out.printf("%s;%s;%.4f B/px;%s%n", imgPath, filter.name().toLowerCase(), bytesPerPixel, ok ? "OK" : "FAIL");
+            }
+        }
+
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
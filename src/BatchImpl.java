@@ -0,0 +1,56 @@
+import models.FilterStage;
+import models.FiltersEnum;
+import parallel.BatchRunner;
+import utils.PerformanceAnalyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static models.FiltersEnum.*;
+import static models.ImageDivisionEnum.*;
+
+/**
+ * Processes every image of a directory, or of a manifest file with one path per line, with the given filters.
+ * Usage: BatchImpl [directory or manifest], the ./input/ directory by default.
+ */
+public class BatchImpl {
+    public static void main(String[] args) {
+        // GENERAL CONFIG
+        final List<FiltersEnum> filtersConf = List.of(BLUR, BRIGHTNESS, CONDITIONAL_BLUR, GAUSSIAN_BLUR, GLASS, GRAYSCALE, SWIRL);
+        final int NUM_OF_THREADS = Runtime.getRuntime().availableProcessors();
+        final int IO_THREADS = 2;
+        // half of the heap for the images and the outputs not yet written
+        final long MAX_PIXELS_IN_FLIGHT = Runtime.getRuntime().maxMemory() / Integer.BYTES / 2;
+
+        // FILES PATH
+        final String inputPath = args.length > 0 ? args[0] : "./input/";
+        final String outputDirPath = "./output/batch/";
+        final String outputCSVPath = "./output/batch.csv";
+
+        // IMAGES TO PROCESS
+        final List<String> imgPathList = BatchRunner.inputsOf(inputPath);
+
+        // PERFORMANCE ANALYZER
+        PerformanceAnalyzer performanceAnalyzer = new PerformanceAnalyzer();
+        performanceAnalyzer.csvHeaders("Image;Filter;Pixels;Filter time(ms);End-to-end time(ms)\n");
+
+        List<FilterStage> stages = new ArrayList<>();
+        for (var filter : filtersConf) {
+            stages.add(FilterStage.of(filter));
+        }
+
+        try (BatchRunner runner = new BatchRunner(NUM_OF_THREADS, IO_THREADS, MAX_PIXELS_IN_FLIGHT)) {
+            BatchRunner.Report report = runner.run(imgPathList, stages, TILED, outputDirPath);
+
+            for (var result : report.results()) {
+                performanceAnalyzer.row(result.input(), result.filter().name().toLowerCase(), result.pixels(),
+                        result.filterNanos() / 1000000, result.endToEndNanos() / 1000000);
+            }
+            performanceAnalyzer.row("total: " + report.images() + " images, " + report.failures() + " failed",
+                    report.jobs() + " jobs", report.pixels(), "-", report.elapsedNanos() / 1000000);
+            System.out.printf("%d images, %d jobs in %.2f s: %.2f images/s, %.2f MP/s%n", report.images(), report.jobs(),
+                    report.elapsedNanos() / 1e9, report.imagesPerSecond(), report.megapixelsPerSecond());
+        }
+        performanceAnalyzer.save(outputCSVPath);
+    }
+}
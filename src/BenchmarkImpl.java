@@ -0,0 +1,144 @@
+import filters.Filter;
+import filters.FilterFactory;
+import models.ConcurrentImage;
+import models.EngineEnum;
+import models.FiltersEnum;
+import models.ImageDivisionEnum;
+import models.PartitionPolicy;
+import models.PixelBuffer;
+import parallel.EngineFactory;
+import parallel.ExecutionEngine;
+import utils.BenchmarkRunner;
+import utils.ImageUtils;
+import utils.PerformanceAnalyzer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static models.EngineEnum.*;
+import static models.FiltersEnum.*;
+import static models.ImageDivisionEnum.*;
+
+/**
+ * Benchmarks every engine over every filter and division method.
+ * Only the filter is timed, after a warmup, the output image is reset outside the timed section and the
+ * image loading and writing are measured in their own rows.
+ */
+public class BenchmarkImpl {
+
+    private static final String HEADERS = "Engine;Image;Filter;Image Division Method;Number of Threads;Number of chunks;"
+            + "Threshold(px);Mean(ms);Min(ms);Max(ms);StdDev(ms);GC count;GC time(ms);Allocated(MB/op)\n";
+
+    public static void main(String[] args) {
+        // GENERAL CONFIG
+        final List<EngineEnum> enginesConf = List.of(SEQUENTIAL, MULTITHREADED, EXECUTOR_BASED, FORK_JOIN, COMPLETABLE_FUTURES, VIRTUAL_THREADS);
+        final List<Integer> numOfChunks = List.of(4, 8, 12, 16);
+        final List<Integer> numOfThreads = List.of(8, 9, 10);
+        // thresholds are taken as a fraction of the image pixels so that they work for any image
+        final List<Integer> thresholdDivisors = List.of(3, 4, 5);
+        final List<ImageDivisionEnum> divisionConf = List.of(VERTICAL, HORIZONTAL, RECTANGULAR, TILED);
+        final List<FiltersEnum> filtersConf = List.of(BLUR, BRIGHTNESS, CONDITIONAL_BLUR, GAUSSIAN_BLUR, GLASS, GRAYSCALE, SWIRL);
+        final int WARMUP_RUNS = 3;
+        final int MEASURED_RUNS = 5;
+
+        // FILES PATH
+        final String inputDirPath = "./input/";
+        final String outputDirPath = "./output/";
+        final String outputCSVPath = "./output/benchmark.csv";
+
+        // IMAGES TO PROCESS
+        final List<String> imgPathList = List.of(inputDirPath + "turtle.jpg", inputDirPath + "monkey.png", inputDirPath + "bridge.jpg");
+
+        // PERFORMANCE ANALYZER
+        PerformanceAnalyzer performanceAnalyzer = new PerformanceAnalyzer();
+        performanceAnalyzer.csvHeaders(HEADERS);
+        BenchmarkRunner runner = new BenchmarkRunner(WARMUP_RUNS, MEASURED_RUNS);
+        new File(outputDirPath).mkdirs();
+
+        for (String imgPath : imgPathList) {
+            String imageName = imgPath.substring(imgPath.lastIndexOf("/") + 1, imgPath.lastIndexOf("."));
+            PixelBuffer image = ImageUtils.loadPixels(imgPath);
+            ConcurrentImage outputImg = new ConcurrentImage(new PixelBuffer(image.width(), image.height()));
+            Runnable noSetup = () -> {
+            };
+
+            // I/O is measured on its own
+            record(performanceAnalyzer, "io-load", imgPath, "-", 0, null,
+                    runner.run(noSetup, () -> ImageUtils.loadPixels(imgPath)));
+            String outputPath = outputDirPath + imageName + "_benchmark.jpg";
+            record(performanceAnalyzer, "io-write", imgPath, "-", 0, null,
+                    runner.run(noSetup, () -> ImageUtils.writeImage(image, outputPath)));
+
+            for (var engineConf : enginesConf) {
+                // the sequential and virtual thread engines do not have a number of threads
+                for (var currentNumOfThreads : engineConf == SEQUENTIAL || engineConf == VIRTUAL_THREADS ? List.of(1) : numOfThreads) {
+                    try (ExecutionEngine engine = EngineFactory.of(engineConf, currentNumOfThreads)) {
+                        for (var policy : policiesOf(engineConf, currentNumOfThreads, image, divisionConf, numOfChunks, thresholdDivisors)) {
+                            for (var filterConf : filtersConf) {
+                                Filter filter = FilterFactory.of(filterConf);
+                                int amount = filterConf.defaultAmount();
+                                // only the pixels the filter leaves untouched are reset, outside the measure
+                                Runnable resetOutput = () -> filter.copyUntouched(image, outputImg.getBuffer(), amount);
+                                record(performanceAnalyzer, engineConf.name().toLowerCase(), imgPath, filterConf.name().toLowerCase(),
+                                        currentNumOfThreads, policy, runner.run(resetOutput, () ->
+                                                engine.execute(filter, amount, image, outputImg, policy)));
+                            }
+                        }
+                    }
+                }
+            }
+            performanceAnalyzer.save(outputCSVPath);
+        }
+    }
+
+    /**
+     * Gets the partition policies that apply to an engine: the sequential engine does not split the image,
+     * the multithreaded engine uses one chunk per thread, the recursive engines use thresholds (fixed and adaptive) and the
+     * completable futures and virtual thread engines use a number of chunks.
+     */
+    private static List<PartitionPolicy> policiesOf(EngineEnum engine, int numOfThreads, PixelBuffer image,
+                                                    List<ImageDivisionEnum> divisionConf, List<Integer> numOfChunks,
+                                                    List<Integer> thresholdDivisors) {
+        List<PartitionPolicy> policies = new ArrayList<>();
+        if (engine == SEQUENTIAL) {
+            policies.add(PartitionPolicy.ofChunks(VERTICAL, 1));
+            return policies;
+        }
+        for (var divisionMethod : divisionConf) {
+            switch (engine) {
+                case MULTITHREADED -> policies.add(PartitionPolicy.ofChunks(divisionMethod, numOfThreads));
+                case EXECUTOR_BASED, FORK_JOIN -> {
+                    for (var divisor : thresholdDivisors) {
+                        policies.add(PartitionPolicy.ofThreshold(divisionMethod, image.width() * image.height() / divisor));
+                    }
+                    // threshold 0 in the csv
+                    policies.add(PartitionPolicy.adaptive(divisionMethod));
+                }
+                case COMPLETABLE_FUTURES, VIRTUAL_THREADS -> {
+                    for (var currentNumOfChunks : numOfChunks) {
+                        policies.add(PartitionPolicy.ofChunks(divisionMethod, currentNumOfChunks));
+                    }
+                }
+            }
+        }
+        if (engine == VIRTUAL_THREADS) {
+            // one task per row, 0 chunks in the csv
+            policies.add(PartitionPolicy.ofChunks(VERTICAL, 0));
+        }
+        return policies;
+    }
+
+    private static void record(PerformanceAnalyzer performanceAnalyzer, String engine, String image, String filter,
+                               int threads, PartitionPolicy policy, BenchmarkRunner.Result result) {
+        Object division = policy == null ? "-" : policy.division();
+        int chunks = policy == null ? 0 : policy.numOfChunks();
+        int threshold = policy == null ? 0 : policy.threshold();
+        performanceAnalyzer.row(engine, image, filter, division, threads, chunks, threshold,
+                String.format("%.3f", result.meanMillis()), String.format("%.3f", result.minMillis()),
+                String.format("%.3f", result.maxMillis()), String.format("%.3f", result.stdDevMillis()),
+                result.gcCount(), result.gcTimeMillis(), String.format("%.3f", result.allocatedMBPerOp()));
+        System.out.println(engine + ";" + image + ";" + filter + ";" + division + ";" + threads + ";" + chunks + ";"
+                + threshold + ";" + String.format("%.3f", result.meanMillis()));
+    }
+}
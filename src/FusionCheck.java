@@ -0,0 +1,75 @@
+import filters.FilterFactory;
+import models.EngineEnum;
+import models.FilterStage;
+import models.PartitionPolicy;
+import models.PixelBuffer;
+import parallel.EngineFactory;
+import parallel.ExecutionEngine;
+import parallel.FilterPipeline;
+import utils.ImageUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static models.FiltersEnum.*;
+import static models.ImageDivisionEnum.*;
+
+/**
+ * Checks that the fused pipelines give the same output as applying their filters one after the other, with every
+ * engine, including the neighbourhood filters with an amount of 0.
+ */
+public class FusionCheck {
+    public static void main(String[] args) {
+        // GENERAL CONFIG
+        final List<List<FilterStage>> pipelinesConf = List.of(
+                List.of(FilterStage.of(GRAYSCALE), FilterStage.of(BRIGHTNESS), FilterStage.of(CONDITIONAL_BLUR)),
+                List.of(FilterStage.of(BRIGHTNESS), FilterStage.of(BLUR), FilterStage.of(GLASS)),
+                List.of(FilterStage.of(GAUSSIAN_BLUR), FilterStage.of(GRAYSCALE), FilterStage.of(BLUR)),
+                List.of(new FilterStage(GLASS, 0), new FilterStage(BLUR, 0)),
+                List.of(new FilterStage(GAUSSIAN_BLUR, 0), FilterStage.of(BRIGHTNESS),
+                        new FilterStage(CONDITIONAL_BLUR, 0)),
+                List.of(new FilterStage(BRIGHTNESS, 0), new FilterStage(GLASS, 0), FilterStage.of(GRAYSCALE)));
+        final int NUM_OF_THREADS = Runtime.getRuntime().availableProcessors();
+        final int NUM_OF_CHUNKS = 2 * NUM_OF_THREADS;
+
+        // FILES PATH
+        final String inputDirPath = "./input/";
+
+        // IMAGES TO PROCESS
+        final List<String> imgPathList = List.of(inputDirPath + "turtle.jpg", inputDirPath + "monkey.png");
+
+        boolean failed = false;
+        for (String imgPath : imgPathList) {
+            PixelBuffer image = ImageUtils.loadPixels(imgPath);
+
+            for (var stages : pipelinesConf) {
+                String pipelineName = String.join("+", stages.stream()
+                        .map(stage -> stage.filter().name().toLowerCase() + ":" + stage.amount()).toList());
+                FilterPipeline pipeline = new FilterPipeline(stages);
+
+                for (var engineConf : EngineEnum.values()) {
+                    boolean splitsByThreshold = engineConf == EngineEnum.EXECUTOR_BASED || engineConf == EngineEnum.FORK_JOIN;
+                    PartitionPolicy policy = splitsByThreshold
+                            ? PartitionPolicy.adaptive(RECTANGULAR) : PartitionPolicy.ofChunks(RECTANGULAR, NUM_OF_CHUNKS);
+                    boolean ok;
+                    try (ExecutionEngine engine = EngineFactory.of(engineConf, NUM_OF_THREADS)) {
+                        PixelBuffer expected = image;
+                        for (var stage : stages) {
+                            expected = engine.apply(FilterFactory.of(stage.filter()), stage.amount(), expected, policy);
+                        }
+                        ok = Arrays.equals(expected.pixels(), pipeline.apply(engine, image, policy).pixels());
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                        ok = false;
+                    }
+                    failed |= !ok;
+                    System.out.printf("%s;%s;%s;%s%n", imgPath, pipelineName, engineConf.name().toLowerCase(), ok ? "OK" : "FAIL");
+                }
+            }
+        }
+
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import filters.BrightnessFilter;
+import filters.GrayscaleFilter;
+import filters.PixelKernels;
+
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Checks that the row kernels of the per-pixel filters give the same output as the per-pixel functions, for every
+ * 24 bit colour and every brightness amount.
+ * Run without {@code -Dfilters.kernels=scalar}, or the kernels are the per-pixel functions themselves.
+ */
+public class KernelCheck {
+    public static void main(String[] args) {
+        // GENERAL CONFIG
+        final int COLOURS = 1 << 24;
+        // the amounts outside 0..255 take the per-pixel path, they are only checked for completeness
+        final int[] brightnessAmounts = IntStream.rangeClosed(-1, 256).toArray();
+
+        if (!PixelKernels.SWAR) {
+            System.out.println("The row kernels are disabled with -Dfilters.kernels=scalar, nothing to check");
+        }
+
+        int[] colours = new int[COLOURS];
+        for (int i = 0; i < COLOURS; i++) {
+            colours[i] = i;
+        }
+        int[] output = new int[COLOURS];
+        boolean grayscaleFailed = false;
+
+        PixelKernels.grayscale(colours, 0, output, 0, COLOURS);
+        int mismatch = firstMismatch(output, colour -> GrayscaleFilter.apply(colour));
+        grayscaleFailed |= mismatch >= 0;
+        System.out.printf("grayscale;%s%n", mismatch < 0 ? "OK" : String.format("FAIL at #%06X", mismatch));
+
+        boolean brightnessFailed = false;
+        for (int amount : brightnessAmounts) {
+            PixelKernels.brightness(colours, 0, output, 0, COLOURS, amount);
+            mismatch = firstMismatch(output, colour -> BrightnessFilter.apply(colour, amount));
+            brightnessFailed |= mismatch >= 0;
+            if (mismatch >= 0) {
+                System.out.printf("brightness:%d;FAIL at #%06X%n", amount, mismatch);
+            }
+        }
+        System.out.printf("brightness:%d..%d;%s%n", brightnessAmounts[0], brightnessAmounts[brightnessAmounts.length - 1],
+                brightnessFailed ? "FAIL" : "OK");
+
+        if (grayscaleFailed || brightnessFailed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Gets the first colour whose output differs from the per-pixel function, -1 if there is none.
+     */
+    private static int firstMismatch(int[] output, IntUnaryOperator expected) {
+        for (int colour = 0; colour < output.length; colour++) {
+            if (output[colour] != expected.applyAsInt(colour)) {
+                return colour;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,70 @@
+import models.EngineEnum;
+import models.FiltersEnum;
+import models.PartitionPolicy;
+import models.PixelBuffer;
+import parallel.EngineFactory;
+import parallel.ExecutionEngine;
+import parallel.FilterPipeline;
+import utils.AsyncImageWriter;
+import utils.ImageUtils;
+import utils.PerformanceAnalyzer;
+
+import java.util.List;
+
+import static models.FiltersEnum.*;
+import static models.ImageDivisionEnum.*;
+
+public class PipelineImpl {
+    public static void main(String[] args) {
+        // GENERAL CONFIG
+        final List<List<FiltersEnum>> pipelinesConf = List.of(
+                List.of(GRAYSCALE, BRIGHTNESS, CONDITIONAL_BLUR),
+                List.of(BRIGHTNESS, BLUR, GLASS),
+                List.of(BLUR, SWIRL, GRAYSCALE));
+        final EngineEnum ENGINE = EngineEnum.FORK_JOIN;
+        final int NUM_OF_THREADS = Runtime.getRuntime().availableProcessors();
+        final PartitionPolicy POLICY = PartitionPolicy.adaptive(HORIZONTAL);
+        final int RUNS = 3;
+        final int IO_THREADS = 2;
+        final int WRITE_QUEUE_CAPACITY = 4;
+
+        // FILES PATH
+        final String inputDirPath = "./input/";
+        final String outputDirPath = "./output/";
+        final String outputCSVPath = "./output/pipeline.csv";
+
+        // IMAGES TO PROCESS
+        final List<String> imgPathList = List.of(inputDirPath + "turtle.jpg", inputDirPath + "monkey.png", inputDirPath + "bridge.jpg");
+
+        // PERFORMANCE ANALYZER
+        PerformanceAnalyzer performanceAnalyzer = new PerformanceAnalyzer();
+        performanceAnalyzer.csvHeaders("Method;Image;Filter;Filter time(ms);End-to-end time(ms)\n");
+
+        // IMAGE WRITER, the output is encoded while the next filter runs
+        AsyncImageWriter imageWriter = new AsyncImageWriter(IO_THREADS, WRITE_QUEUE_CAPACITY);
+
+        try (ExecutionEngine engine = EngineFactory.of(ENGINE, NUM_OF_THREADS)) {
+            for (String imgPath : imgPathList) {
+                String imageName = imgPath.substring(imgPath.lastIndexOf("/") + 1, imgPath.lastIndexOf("."));
+                PixelBuffer image = ImageUtils.loadPixels(imgPath);
+
+                for (var pipelineConf : pipelinesConf) {
+                    FilterPipeline pipeline = FilterPipeline.of(pipelineConf);
+                    String pipelineName = String.join("+", pipelineConf.stream().map(f -> f.name().toLowerCase()).toList());
+                    String outputPath = outputDirPath + imageName + "_" + pipelineName.replace('+', '_') + "_pipeline.jpg";
+
+                    for (int k = 0; k < RUNS; k++) {
+                        performanceAnalyzer.start("pipeline " + ENGINE.name().toLowerCase(), imgPath, pipelineName);
+
+                        PixelBuffer outputImg = pipeline.apply(engine, image, POLICY);
+
+                        performanceAnalyzer.stopFilter();
+                        performanceAnalyzer.stopWhenWritten(imageWriter.write(outputImg, outputPath));
+                    }
+                }
+            }
+        }
+        imageWriter.close();
+        performanceAnalyzer.save(outputCSVPath);
+    }
+}
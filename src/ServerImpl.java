@@ -0,0 +1,47 @@
+import models.EngineEnum;
+import models.PartitionPolicy;
+import parallel.EngineFactory;
+import parallel.ExecutionEngine;
+import parallel.ResultCache;
+import server.ImageServer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static models.ImageDivisionEnum.*;
+
+/**
+ * Serves the filters over HTTP until the JVM is stopped, e.g.
+ * {@code curl --data-binary @input/turtle.jpg "http://localhost:8080/filter?filters=blur:5,swirl" -o turtle.jpg}.
+ */
+public class ServerImpl {
+    public static void main(String[] args) throws IOException {
+        // GENERAL CONFIG
+        final EngineEnum ENGINE = EngineEnum.FORK_JOIN;
+        final int NUM_OF_THREADS = Runtime.getRuntime().availableProcessors();
+        final PartitionPolicy POLICY = PartitionPolicy.adaptive(HORIZONTAL);
+        final int PORT = 8080;
+        final int REQUEST_THREADS = 2 * NUM_OF_THREADS;
+        final long MAX_IN_FLIGHT_PIXELS = 32_000_000;
+        final long ADMISSION_TIMEOUT_MILLIS = 5000;
+        final long MEMORY_CACHE_BYTES = 256L * 1024 * 1024;
+        final long DISK_CACHE_BYTES = 4L * 1024 * 1024 * 1024;
+
+        // FILES PATH
+        final String cacheDirPath = "./output/cache/";
+
+        // RESULT CACHE
+        ResultCache cache = new ResultCache(MEMORY_CACHE_BYTES, Path.of(cacheDirPath), DISK_CACHE_BYTES);
+
+        ExecutionEngine engine = EngineFactory.of(ENGINE, NUM_OF_THREADS);
+        ImageServer server = new ImageServer(engine, POLICY, PORT, REQUEST_THREADS, MAX_IN_FLIGHT_PIXELS,
+                ADMISSION_TIMEOUT_MILLIS, cache);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            engine.close();
+        }));
+
+        server.start();
+        System.out.println("Listening on http://localhost:" + server.getPort() + "/filter");
+    }
+}
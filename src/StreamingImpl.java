@@ -0,0 +1,62 @@
+import models.EngineEnum;
+import models.FilterStage;
+import models.FiltersEnum;
+import models.PartitionPolicy;
+import parallel.EngineFactory;
+import parallel.ExecutionEngine;
+import parallel.StripProcessor;
+import utils.MappedPixelFile;
+import utils.PerformanceAnalyzer;
+import utils.StreamingImageIO;
+
+import java.util.List;
+
+import static models.FiltersEnum.*;
+import static models.ImageDivisionEnum.*;
+
+/**
+ * Filters images without ever holding a whole image on the heap: they are decoded into memory-mapped scratch
+ * files, filtered in strips of rows and encoded from the scratch file.
+ */
+public class StreamingImpl {
+    public static void main(String[] args) {
+        // GENERAL CONFIG
+        final List<FiltersEnum> filtersConf = List.of(BLUR, BRIGHTNESS, CONDITIONAL_BLUR, GAUSSIAN_BLUR, GLASS, GRAYSCALE);
+        final EngineEnum ENGINE = EngineEnum.FORK_JOIN;
+        final int NUM_OF_THREADS = Runtime.getRuntime().availableProcessors();
+        final PartitionPolicy POLICY = PartitionPolicy.adaptive(HORIZONTAL);
+        final int STRIP_HEIGHT = 512;
+
+        // FILES PATH
+        final String inputDirPath = "./input/";
+        final String outputDirPath = "./output/";
+        final String outputCSVPath = "./output/streaming.csv";
+
+        // IMAGES TO PROCESS
+        final List<String> imgPathList = List.of(inputDirPath + "turtle.jpg", inputDirPath + "monkey.png", inputDirPath + "bridge.jpg");
+
+        // PERFORMANCE ANALYZER
+        PerformanceAnalyzer performanceAnalyzer = new PerformanceAnalyzer();
+        performanceAnalyzer.csvHeaders("Method;Image;Filter;Time(ms)\n");
+
+        StripProcessor stripProcessor = new StripProcessor(STRIP_HEIGHT);
+        try (ExecutionEngine engine = EngineFactory.of(ENGINE, NUM_OF_THREADS)) {
+            for (String imgPath : imgPathList) {
+                String imageName = imgPath.substring(imgPath.lastIndexOf("/") + 1, imgPath.lastIndexOf("."));
+
+                for (var filterConf : filtersConf) {
+                    String outputPath = outputDirPath + imageName + "_" + filterConf.name().toLowerCase() + "_streaming.jpg";
+                    performanceAnalyzer.start("streaming " + ENGINE.name().toLowerCase(), imgPath, filterConf.name().toLowerCase());
+
+                    try (MappedPixelFile image = StreamingImageIO.load(imgPath, STRIP_HEIGHT);
+                         MappedPixelFile outputImg = MappedPixelFile.create(image.width(), image.height())) {
+                        stripProcessor.apply(engine, List.of(FilterStage.of(filterConf)), image, outputImg, POLICY);
+                        StreamingImageIO.write(outputImg, outputPath);
+                    }
+                    performanceAnalyzer.stop();
+                }
+            }
+        }
+        performanceAnalyzer.save(outputCSVPath);
+    }
+}
@@ -0,0 +1,173 @@
+package filters;
+
+import models.ChunkBoundaries;
+import models.ConcurrentImage;
+import models.PixelBuffer;
+
+import java.util.Arrays;
+
+/**
+ * Box blur with O(1) work per pixel, shared by {@link BlurFilter} and {@link ConditionalBlurFilter}.
+ * <p>
+ * The (2r+1)x(2r+1) neighbourhood sum is separable: every row of the chunk (plus a halo of r rows above
+ * and below) gets a running horizontal window sum, and the last 2r+1 of those rows are kept in a ring
+ * buffer while a running vertical sum slides down the chunk. Neighbours outside the image are skipped
+ * and the divisor is the number of neighbours inside it, so the result matches the naive averaging.
+ */
+public class BoxBlur {
+
+    /**
+     * The arrays a blur works in, allocated once for the blurs of several parts of a chunk.
+     */
+    static final class Scratch {
+
+        // horizontal sums of the rows currently inside the vertical window
+        private final int[] rowRed;
+        private final int[] rowGreen;
+        private final int[] rowBlue;
+
+        // vertical sums of the horizontal sums, one per column of the chunk
+        private final int[] colRed;
+        private final int[] colGreen;
+        private final int[] colBlue;
+
+        /**
+         * @param radius   the blur radius.
+         * @param maxWidth the width of the widest part blurred with it.
+         */
+        Scratch(int radius, int maxWidth) {
+            int window = 2 * radius + 1;
+            this.rowRed = new int[window * maxWidth];
+            this.rowGreen = new int[window * maxWidth];
+            this.rowBlue = new int[window * maxWidth];
+            this.colRed = new int[maxWidth];
+            this.colGreen = new int[maxWidth];
+            this.colBlue = new int[maxWidth];
+        }
+    }
+
+    private BoxBlur() {
+    }
+
+    /**
+     * Blurs the chunk of the input image into the shared image.
+     *
+     * @param inputImg    the image to read from.
+     * @param boundaries  the chunk to write.
+     * @param sharedImg   the image to write to.
+     * @param radius      the blur radius.
+     * @param conditional if true, only pixels with a red value above 100 are written.
+     */
+    public static void exec(PixelBuffer inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg,
+                            int radius, boolean conditional) {
+        int chunkWidth = boundaries.upperBoundM() - boundaries.lowerBoundM() + 1;
+        exec(inputImg, boundaries, sharedImg, radius, conditional, new Scratch(radius, chunkWidth));
+    }
+
+    /**
+     * Blurs the chunk of the input image into the shared image, in arrays that are reused from a previous blur.
+     *
+     * @param scratch arrays for the radius, at least as wide as the chunk.
+     */
+    static void exec(PixelBuffer inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg,
+                     int radius, boolean conditional, Scratch scratch) {
+        int width = inputImg.width();
+        int height = inputImg.height();
+        int[] pixels = inputImg.pixels();
+
+        int lowerX = boundaries.lowerBoundM();
+        int upperX = boundaries.upperBoundM();
+        int chunkWidth = upperX - lowerX + 1;
+        int window = 2 * radius + 1;
+
+        int[] rowRed = scratch.rowRed;
+        int[] rowGreen = scratch.rowGreen;
+        int[] rowBlue = scratch.rowBlue;
+        int[] colRed = scratch.colRed;
+        int[] colGreen = scratch.colGreen;
+        int[] colBlue = scratch.colBlue;
+        // the ring buffer slots are written before being read, only the vertical sums start from 0
+        Arrays.fill(colRed, 0, chunkWidth, 0);
+        Arrays.fill(colGreen, 0, chunkWidth, 0);
+        Arrays.fill(colBlue, 0, chunkWidth, 0);
+
+        int firstRow = Math.max(0, boundaries.lowerBoundN() - radius);
+        int lastPrimedRow = Math.min(height - 1, boundaries.lowerBoundN() + radius - 1);
+        for (int row = firstRow; row <= lastPrimedRow; row++) {
+            addRow(pixels, width, row, lowerX, upperX, radius, window, rowRed, rowGreen, rowBlue, colRed, colGreen, colBlue);
+        }
+
+        for (int y = boundaries.lowerBoundN(); y <= boundaries.upperBoundN(); y++) {
+            int entering = y + radius;
+            if (entering < height) {
+                addRow(pixels, width, entering, lowerX, upperX, radius, window, rowRed, rowGreen, rowBlue, colRed, colGreen, colBlue);
+            }
+
+            int rowCount = Math.min(height - 1, y + radius) - Math.max(0, y - radius) + 1;
+            for (int x = lowerX; x <= upperX; x++) {
+                if (conditional && !ConditionalMask.isBlurred(pixels[y * width + x])) {
+                    continue;
+                }
+                int colCount = Math.min(width - 1, x + radius) - Math.max(0, x - radius) + 1;
+                int count = rowCount * colCount;
+                int c = x - lowerX;
+                sharedImg.updatePixel(x, y, PixelBuffer.rgb(colRed[c] / count, colGreen[c] / count, colBlue[c] / count));
+            }
+
+            int leaving = y - radius;
+            if (leaving >= 0) {
+                int base = (leaving % window) * chunkWidth;
+                for (int c = 0; c < chunkWidth; c++) {
+                    colRed[c] -= rowRed[base + c];
+                    colGreen[c] -= rowGreen[base + c];
+                    colBlue[c] -= rowBlue[base + c];
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the horizontal window sums of a row for every column of the chunk, stores them in the ring
+     * buffer slot of that row and adds them to the vertical sums.
+     */
+    private static void addRow(int[] pixels, int width, int row, int lowerX, int upperX, int radius, int window,
+                               int[] rowRed, int[] rowGreen, int[] rowBlue,
+                               int[] colRed, int[] colGreen, int[] colBlue) {
+        int rowOffset = row * width;
+        int base = (row % window) * (upperX - lowerX + 1);
+        int sumRed = 0, sumGreen = 0, sumBlue = 0;
+
+        for (int x = Math.max(0, lowerX - radius); x <= Math.min(width - 1, lowerX + radius); x++) {
+            int pixel = pixels[rowOffset + x];
+            sumRed += PixelBuffer.red(pixel);
+            sumGreen += PixelBuffer.green(pixel);
+            sumBlue += PixelBuffer.blue(pixel);
+        }
+
+        for (int x = lowerX; x <= upperX; x++) {
+            int c = x - lowerX;
+            rowRed[base + c] = sumRed;
+            rowGreen[base + c] = sumGreen;
+            rowBlue[base + c] = sumBlue;
+            colRed[c] += sumRed;
+            colGreen[c] += sumGreen;
+            colBlue[c] += sumBlue;
+
+            // slides the window one column to the right
+            int entering = x + radius + 1;
+            if (entering < width) {
+                int pixel = pixels[rowOffset + entering];
+                sumRed += PixelBuffer.red(pixel);
+                sumGreen += PixelBuffer.green(pixel);
+                sumBlue += PixelBuffer.blue(pixel);
+            }
+            int leaving = x - radius;
+            if (leaving >= 0) {
+                int pixel = pixels[rowOffset + leaving];
+                sumRed -= PixelBuffer.red(pixel);
+                sumGreen -= PixelBuffer.green(pixel);
+                sumBlue -= PixelBuffer.blue(pixel);
+            }
+        }
+    }
+}
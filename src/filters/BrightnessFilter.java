@@ -2,27 +2,33 @@ package filters;
 
 import models.ChunkBoundaries;
 import models.ConcurrentImage;
-
-import java.awt.*;
+import models.PixelBuffer;
 
 public class BrightnessFilter {
-    public static void exec(Color[][] inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg, int brightnessAmount) {
-        for (int i = boundaries.lowerBoundM(); i <= boundaries.upperBoundM(); i++) {
-            for (int j = boundaries.lowerBoundN(); j <= boundaries.upperBoundN(); j++) {
+    public static void exec(PixelBuffer inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg, int brightnessAmount) {
+        int[] input = inputImg.pixels();
+        int[] output = PixelKernels.outputOf(inputImg, boundaries, sharedImg);
+        int length = boundaries.upperBoundM() - boundaries.lowerBoundM() + 1;
+        for (int j = boundaries.lowerBoundN(); j <= boundaries.upperBoundN(); j++) {
+            int offset = j * inputImg.width() + boundaries.lowerBoundM();
+            PixelKernels.brightness(input, offset, output, offset, length, brightnessAmount);
+        }
+    }
 
-                // fetches values of each pixel
-                Color pixel = inputImg[i][j];
-                int r = pixel.getRed();
-                int g = pixel.getGreen();
-                int b = pixel.getBlue();
+    /**
+     * Brightens a single packed RGB pixel.
+     */
+    public static int apply(int pixel, int brightnessAmount) {
+        // fetches values of each pixel
+        int r = PixelBuffer.red(pixel);
+        int g = PixelBuffer.green(pixel);
+        int b = PixelBuffer.blue(pixel);
 
-                // takes average of color values
-                r = Math.min(r + brightnessAmount, 255);
-                g = Math.min(g + brightnessAmount, 255);
-                b = Math.min(b + brightnessAmount, 255);
+        // takes average of color values
+        r = Math.min(r + brightnessAmount, 255);
+        g = Math.min(g + brightnessAmount, 255);
+        b = Math.min(b + brightnessAmount, 255);
 
-                sharedImg.updatePixel(i, j, new Color(r, g, b));
-            }
-        }
+        return PixelBuffer.rgb(r, g, b);
     }
 }
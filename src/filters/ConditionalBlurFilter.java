@@ -2,42 +2,108 @@ package filters;
 
 import models.ChunkBoundaries;
 import models.ConcurrentImage;
+import models.PixelBuffer;
+import utils.ParallelRows;
 
-import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static utils.DataDecompositionUtils.TILE_SIZE;
 
 public class ConditionalBlurFilter {
-    public static void exec(Color[][] inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg, int blurAmount) {
-        for (int image_i = boundaries.lowerBoundM(); image_i <= boundaries.upperBoundM(); image_i++) {
-            for (int image_j = boundaries.lowerBoundN(); image_j <= boundaries.upperBoundN(); image_j++) {
-                if (inputImg[image_i][image_j].getRed() > 100) {
-                    int sumRed = 0, sumGreen = 0, sumBlue = 0;
-                    int count = 0;
-
-                    for (int submatrix_i = -blurAmount; submatrix_i <= blurAmount; submatrix_i++) {
-                        for (int submatrix_j = -blurAmount; submatrix_j <= blurAmount; submatrix_j++) {
-                            int neighbor_i = image_i + submatrix_i;
-                            int neighbor_j = image_j + submatrix_j;
-
-                            if (neighbor_i >= 0 && neighbor_i < inputImg.length && neighbor_j >= 0 && neighbor_j
-                                    < inputImg[0].length) {
-                                Color pixel = inputImg[neighbor_i][neighbor_j];
-                                sumRed += pixel.getRed();
-                                sumGreen += pixel.getGreen();
-                                sumBlue += pixel.getBlue();
-                                count++;
-                            }
-                        }
-                    }
-
-                    int averageRed = sumRed / count;
-                    int averageGreen = sumGreen / count;
-                    int averageBlue = sumBlue / count;
-
-                    Color newPixel = new Color(averageRed, averageGreen, averageBlue);
-
-                    sharedImg.updatePixel(image_i, image_j, newPixel);
+
+    /**
+     * Blurs the pixels of the chunk with a red value above 100, the others keep their value.
+     * <p>
+     * The chunk is scanned in bands of {@link utils.DataDecompositionUtils#TILE_SIZE} rows, aligned on the tiles of
+     * the image, and only the runs of consecutive tiles holding a pixel to blur are blurred, the other tiles are
+     * skipped. Consecutive bands with the same runs are blurred together, so that a chunk full of pixels to blur is
+     * blurred in one go.
+     */
+    public static void exec(PixelBuffer inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg, int blurAmount) {
+        // the same arrays for the blurs of every run
+        int chunkWidth = boundaries.upperBoundM() - boundaries.lowerBoundM() + 1;
+        BoxBlur.Scratch scratch = new BoxBlur.Scratch(blurAmount, chunkWidth);
+        // first and last column of every run of the bands being merged, and of the current band
+        List<int[]> runs = List.of();
+        int runsLower = boundaries.lowerBoundN();
+
+        int bandLower = boundaries.lowerBoundN();
+        while (bandLower <= boundaries.upperBoundN()) {
+            int bandUpper = Math.min(boundaries.upperBoundN(), (bandLower / TILE_SIZE + 1) * TILE_SIZE - 1);
+            List<int[]> bandRuns = new ArrayList<>();
+            int[] run = null;
+            for (int tileLower = boundaries.lowerBoundM(); tileLower <= boundaries.upperBoundM(); ) {
+                int tileUpper = Math.min(boundaries.upperBoundM(), (tileLower / TILE_SIZE + 1) * TILE_SIZE - 1);
+                if (!hasPixelToBlur(inputImg, tileLower, tileUpper, bandLower, bandUpper)) {
+                    run = null;
+                } else if (run == null) {
+                    run = new int[]{tileLower, tileUpper};
+                    bandRuns.add(run);
+                } else {
+                    run[1] = tileUpper;
+                }
+                tileLower = tileUpper + 1;
+            }
+
+            if (!sameRuns(runs, bandRuns)) {
+                blur(inputImg, sharedImg, blurAmount, scratch, runs, runsLower, bandLower - 1);
+                runs = bandRuns;
+                runsLower = bandLower;
+            }
+            bandLower = bandUpper + 1;
+        }
+        blur(inputImg, sharedImg, blurAmount, scratch, runs, runsLower, boundaries.upperBoundN());
+    }
+
+    /**
+     * Copies the pixels with a red value of at most 100, the only ones the conditional blur does not write.
+     */
+    public static void copyUntouched(PixelBuffer inputImg, PixelBuffer outputImg) {
+        int width = inputImg.width();
+        int[] input = inputImg.pixels();
+        int[] output = outputImg.pixels();
+
+        ParallelRows.forEach(width, inputImg.height(), (firstRow, endRow) -> {
+            for (int i = firstRow * width; i < endRow * width; i++) {
+                if (!ConditionalMask.isBlurred(input[i])) {
+                    output[i] = input[i];
                 }
             }
+        });
+    }
+
+    private static boolean sameRuns(List<int[]> runs, List<int[]> otherRuns) {
+        if (runs.size() != otherRuns.size()) {
+            return false;
+        }
+        for (int i = 0; i < runs.size(); i++) {
+            if (!Arrays.equals(runs.get(i), otherRuns.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasPixelToBlur(PixelBuffer inputImg, int lowerX, int upperX, int lowerY, int upperY) {
+        int[] pixels = inputImg.pixels();
+        for (int y = lowerY; y <= upperY; y++) {
+            int offset = y * inputImg.width();
+            for (int x = lowerX; x <= upperX; x++) {
+                if (ConditionalMask.isBlurred(pixels[offset + x])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void blur(PixelBuffer inputImg, ConcurrentImage sharedImg, int blurAmount, BoxBlur.Scratch scratch,
+                             List<int[]> runs, int lowerY, int upperY) {
+        for (int[] run : runs) {
+            BoxBlur.exec(inputImg, new ChunkBoundaries(run[0], run[1], lowerY, upperY), sharedImg, blurAmount, true,
+                    scratch);
         }
     }
 }
@@ -0,0 +1,121 @@
+package filters;
+
+import models.ChunkBoundaries;
+import models.PixelBuffer;
+import utils.ParallelRows;
+
+import static utils.DataDecompositionUtils.TILE_SIZE;
+
+/**
+ * Where the pixels blurred by {@link ConditionalBlurFilter} are: for every row of the image and every column of
+ * {@link utils.DataDecompositionUtils#TILE_SIZE} pixels, the number of pixels with a red value above 100.
+ * The mask is built in a single parallel pass over the image, a compare per pixel, and takes a hundred and
+ * twenty-eighth of the size of the image.
+ * <p>
+ * It lets the engines drop the chunks with nothing to blur and estimate the cost of the others, the filter blurs the
+ * whole of the tiles that hold a pixel to blur and only scans the others.
+ */
+public class ConditionalMask {
+
+    private final int width;
+    private final int height;
+    private final int tileColumns;
+    // counts[y * tileColumns + tileX]
+    private final int[] counts;
+    private final boolean[] blurredTiles;
+    private final long total;
+
+    private ConditionalMask(int width, int height, int tileColumns, int[] counts) {
+        this.width = width;
+        this.height = height;
+        this.tileColumns = tileColumns;
+        this.counts = counts;
+        this.blurredTiles = new boolean[(height + TILE_SIZE - 1) / TILE_SIZE * tileColumns];
+        long sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            sum += counts[i];
+            if (counts[i] > 0) {
+                int y = i / tileColumns;
+                blurredTiles[(y / TILE_SIZE) * tileColumns + i % tileColumns] = true;
+            }
+        }
+        this.total = sum;
+    }
+
+    /**
+     * Whether the conditional blur writes a pixel.
+     */
+    public static boolean isBlurred(int pixel) {
+        return PixelBuffer.red(pixel) > 100;
+    }
+
+    /**
+     * Builds the mask of an image.
+     */
+    public static ConditionalMask of(PixelBuffer image) {
+        int width = image.width();
+        int tileColumns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int[] counts = new int[image.height() * tileColumns];
+        int[] pixels = image.pixels();
+
+        ParallelRows.forEach(width, image.height(), (firstRow, endRow) -> {
+            for (int y = firstRow; y < endRow; y++) {
+                for (int tileX = 0; tileX < tileColumns; tileX++) {
+                    int count = 0;
+                    int end = y * width + Math.min(width, (tileX + 1) * TILE_SIZE);
+                    for (int i = y * width + tileX * TILE_SIZE; i < end; i++) {
+                        if (isBlurred(pixels[i])) {
+                            count++;
+                        }
+                    }
+                    counts[y * tileColumns + tileX] = count;
+                }
+            }
+        });
+        return new ConditionalMask(width, image.height(), tileColumns, counts);
+    }
+
+    /**
+     * Gets the number of pixels to blur in the tile columns a chunk overlaps, over the rows of the chunk.
+     * It is 0 only when the chunk has nothing to blur.
+     */
+    public long countIn(ChunkBoundaries chunk) {
+        long count = 0;
+        for (int y = chunk.lowerBoundN(); y <= chunk.upperBoundN(); y++) {
+            count += rowCount(y, chunk);
+        }
+        return count;
+    }
+
+    /**
+     * Whether the tile of a pixel, a square of {@link utils.DataDecompositionUtils#TILE_SIZE} pixels aligned on the
+     * image like the bands of the conditional blur, has a pixel to blur.
+     */
+    public boolean isTileBlurred(int x, int y) {
+        return blurredTiles[(y / TILE_SIZE) * tileColumns + x / TILE_SIZE];
+    }
+
+    private int rowCount(int y, ChunkBoundaries chunk) {
+        int count = 0;
+        int base = y * tileColumns;
+        for (int tileX = chunk.lowerBoundM() / TILE_SIZE; tileX <= chunk.upperBoundM() / TILE_SIZE; tileX++) {
+            count += counts[base + tileX];
+        }
+        return count;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Gets the number of pixels to blur in the whole image.
+     */
+    public long total() {
+        return total;
+    }
+}
@@ -2,10 +2,37 @@ package filters;
 
 import models.ChunkBoundaries;
 import models.ConcurrentImage;
-
-import java.awt.*;
+import models.PixelBuffer;
+import utils.ParallelRows;
 
 @FunctionalInterface
 public interface Filter {
-    void applyFilter(Color[][] inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg, int amount);
+    void applyFilter(PixelBuffer inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg, int amount);
+
+    /**
+     * Gets what identifies the cost of the filter, e.g. for the threshold estimator.
+     * Filters that only differ by the part of the image they are applied to share it.
+     */
+    default Object costKey() {
+        return this;
+    }
+
+    /**
+     * Gets how many rows and columns around its chunk the filter reads, so that the engines do not cut an image in
+     * chunks thinner than the rows they read around them. 0 for the filters that only read the pixels they write.
+     */
+    default int halo(int amount) {
+        return 0;
+    }
+
+    /**
+     * Copies to an output image, in parallel, the pixels of the input image that the filter does not write, so
+     * that an output that is not a copy of the input can be filtered into.
+     * Every pixel is copied unless the filter says which ones it leaves untouched.
+     */
+    default void copyUntouched(PixelBuffer inputImg, PixelBuffer outputImg, int amount) {
+        int width = inputImg.width();
+        ParallelRows.forEach(width, inputImg.height(), (firstRow, endRow) -> System.arraycopy(inputImg.pixels(),
+                firstRow * width, outputImg.pixels(), firstRow * width, (endRow - firstRow) * width));
+    }
 }
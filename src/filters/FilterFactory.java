@@ -0,0 +1,71 @@
+package filters;
+
+import models.ChunkBoundaries;
+import models.ConcurrentImage;
+import models.FilterStage;
+import models.FiltersEnum;
+import models.PixelBuffer;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+public class FilterFactory {
+
+    private static final Map<FiltersEnum, Filter> FILTERS = new EnumMap<>(FiltersEnum.class);
+
+    static {
+        put(FiltersEnum.BLUR, BlurFilter::exec, null);
+        put(FiltersEnum.BRIGHTNESS, BrightnessFilter::exec, null);
+        put(FiltersEnum.CONDITIONAL_BLUR, ConditionalBlurFilter::exec,
+                (inputImg, outputImg, amount) -> ConditionalBlurFilter.copyUntouched(inputImg, outputImg));
+        put(FiltersEnum.GAUSSIAN_BLUR, GaussianBlurFilter::exec, null);
+        put(FiltersEnum.GLASS, GlassFilter::exec, null);
+        put(FiltersEnum.GRAYSCALE, GrayscaleFilter::exec, null);
+        put(FiltersEnum.SWIRL, SwirlFilter::exec, SwirlFilter::copyUntouched);
+    }
+
+    private static void put(FiltersEnum filter, Filter exec, Untouched untouched) {
+        FILTERS.put(filter, new FactoryFilter(filter, exec, untouched));
+    }
+
+    private interface Untouched {
+        void copy(PixelBuffer inputImg, PixelBuffer outputImg, int amount);
+    }
+
+    /**
+     * A filter with the pixels it leaves untouched, null when it writes every pixel of its chunk.
+     */
+    private record FactoryFilter(FiltersEnum filter, Filter exec, Untouched untouched) implements Filter {
+
+        @Override
+        public void applyFilter(PixelBuffer inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg, int amount) {
+            exec.applyFilter(inputImg, boundaries, sharedImg, amount);
+        }
+
+        @Override
+        public void copyUntouched(PixelBuffer inputImg, PixelBuffer outputImg, int amount) {
+            if (untouched != null) {
+                untouched.copy(inputImg, outputImg, amount);
+            }
+        }
+
+        @Override
+        public int halo(int amount) {
+            return FusedFilter.haloOf(new FilterStage(filter, amount));
+        }
+    }
+
+    private FilterFactory() {
+    }
+
+    /**
+     * Gets the implementation of a filter.
+     * The same instance is returned for every call, so it can be used as a key (e.g. by the threshold estimator).
+     *
+     * @param filter the filter to get.
+     * @return the filter implementation.
+     */
+    public static Filter of(FiltersEnum filter) {
+        return FILTERS.get(filter);
+    }
+}
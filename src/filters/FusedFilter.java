@@ -0,0 +1,201 @@
+package filters;
+
+import models.ChunkBoundaries;
+import models.ConcurrentImage;
+import models.FilterStage;
+import models.FiltersEnum;
+import models.PixelBuffer;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Applies a chain of filters to a chunk in one pass, without intermediate images of the size of the input.
+ * <p>
+ * The chunk is processed in bands of rows. Each band is copied with a halo wide enough for every neighbourhood
+ * stage of the chain (blur radii, glass bias) and the stages run one after the other on that small tile, each
+ * one on a region that shrinks by its own radius, so the last stage produces exactly the band. Consecutive
+ * per-pixel stages (brightness, grayscale) run one after the other on each row while it is in the cache.
+ * The halo is recomputed by the neighbouring bands and chunks instead of being exchanged.
+ * <p>
+ * The swirl filter moves pixels across the whole image and cannot be fused.
+ */
+public class FusedFilter implements Filter {
+
+    private static final int MIN_BAND_HEIGHT = 64;
+
+    private final List<FilterStage> stages;
+    private final int halo;
+    private final boolean hasConditionalStage;
+    private final int originX;
+    private final int originY;
+
+    public FusedFilter(List<FilterStage> stages) {
+        this(stages, 0, 0);
+    }
+
+    /**
+     * Creates a fused filter for images that are a part of a larger image, whose first pixel is at
+     * (originX, originY) in it, so that the glass stages draw the same neighbours as on the whole image.
+     */
+    public FusedFilter(List<FilterStage> stages, int originX, int originY) {
+        if (stages.isEmpty()) {
+            throw new IllegalArgumentException("A fused filter needs at least one stage");
+        }
+        int totalHalo = 0;
+        boolean conditional = false;
+        for (var stage : stages) {
+            if (!isFusable(stage.filter())) {
+                throw new IllegalArgumentException("The " + stage.filter() + " filter cannot be fused");
+            }
+            totalHalo += haloOf(stage);
+            conditional |= stage.filter() == FiltersEnum.CONDITIONAL_BLUR;
+        }
+        this.stages = List.copyOf(stages);
+        this.halo = totalHalo;
+        this.hasConditionalStage = conditional;
+        this.originX = originX;
+        this.originY = originY;
+    }
+
+    public static boolean isFusable(FiltersEnum filter) {
+        return filter != FiltersEnum.SWIRL;
+    }
+
+    /**
+     * Gets whether a filter only reads the pixel it writes, so that it can run over a row in place.
+     */
+    public static boolean isPerPixel(FiltersEnum filter) {
+        return filter == FiltersEnum.BRIGHTNESS || filter == FiltersEnum.GRAYSCALE;
+    }
+
+    /**
+     * Gets how far from a pixel a stage reads, 0 for the per-pixel stages and for the neighbourhood stages with
+     * an amount of 0.
+     */
+    public static int haloOf(FilterStage stage) {
+        return switch (stage.filter()) {
+            case BLUR, CONDITIONAL_BLUR, GAUSSIAN_BLUR, GLASS -> Math.max(0, stage.amount());
+            default -> 0;
+        };
+    }
+
+    @Override
+    public void applyFilter(PixelBuffer inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg, int amount) {
+        int bandHeight = Math.max(MIN_BAND_HEIGHT, 4 * halo);
+        for (int bandLower = boundaries.lowerBoundN(); bandLower <= boundaries.upperBoundN(); bandLower += bandHeight) {
+            ChunkBoundaries band = new ChunkBoundaries(boundaries.lowerBoundM(), boundaries.upperBoundM(), bandLower,
+                    Math.min(boundaries.upperBoundN(), bandLower + bandHeight - 1));
+            applyToBand(inputImg, band, sharedImg);
+        }
+    }
+
+    private void applyToBand(PixelBuffer inputImg, ChunkBoundaries band, ConcurrentImage sharedImg) {
+        // tile = band + halo, clamped to the image
+        int tileLowerX = Math.max(0, band.lowerBoundM() - halo);
+        int tileLowerY = Math.max(0, band.lowerBoundN() - halo);
+        int tileWidth = Math.min(inputImg.width() - 1, band.upperBoundM() + halo) - tileLowerX + 1;
+        int tileHeight = Math.min(inputImg.height() - 1, band.upperBoundN() + halo) - tileLowerY + 1;
+
+        PixelBuffer current = new PixelBuffer(tileWidth, tileHeight);
+        for (int y = 0; y < tileHeight; y++) {
+            System.arraycopy(inputImg.pixels(), (tileLowerY + y) * inputImg.width() + tileLowerX, current.pixels(),
+                    y * tileWidth, tileWidth);
+        }
+        PixelBuffer next = null;
+
+        int remainingHalo = halo;
+        int i = 0;
+        while (i < stages.size()) {
+            FilterStage stage = stages.get(i);
+            if (isPerPixel(stage.filter())) {
+                // every consecutive per-pixel stage in a single pass over the rows
+                int end = i;
+                while (end < stages.size() && isPerPixel(stages.get(end).filter())) {
+                    end++;
+                }
+                ChunkBoundaries region = localRegion(band, remainingHalo, inputImg, tileLowerX, tileLowerY);
+                int length = region.upperBoundM() - region.lowerBoundM() + 1;
+                for (int y = region.lowerBoundN(); y <= region.upperBoundN(); y++) {
+                    // the row stays in the cache while every stage runs over it
+                    int offset = y * tileWidth + region.lowerBoundM();
+                    for (int k = i; k < end; k++) {
+                        applyToRow(stages.get(k), current.pixels(), offset, length);
+                    }
+                }
+                i = end;
+            } else {
+                remainingHalo -= haloOf(stage);
+                ChunkBoundaries region = localRegion(band, remainingHalo, inputImg, tileLowerX, tileLowerY);
+                if (next == null) {
+                    next = new PixelBuffer(tileWidth, tileHeight);
+                }
+                if (hasConditionalStage) {
+                    // the pixels a conditional stage does not blur keep their value
+                    System.arraycopy(current.pixels(), 0, next.pixels(), 0, current.pixels().length);
+                }
+                Filter filter = stage.filter() == FiltersEnum.GLASS
+                        ? GlassFilter.seeded(GlassFilter.DEFAULT_SEED, originX + tileLowerX, originY + tileLowerY)
+                        : FilterFactory.of(stage.filter());
+                filter.applyFilter(current, region, new ConcurrentImage(next), stage.amount());
+
+                PixelBuffer swap = current;
+                current = next;
+                next = swap;
+                i++;
+            }
+        }
+
+        for (int y = band.lowerBoundN(); y <= band.upperBoundN(); y++) {
+            for (int x = band.lowerBoundM(); x <= band.upperBoundM(); x++) {
+                sharedImg.updatePixel(x, y, current.get(x - tileLowerX, y - tileLowerY));
+            }
+        }
+    }
+
+    /**
+     * Gets the band expanded by the halo and clamped to the image, in the coordinates of the tile.
+     */
+    private static ChunkBoundaries localRegion(ChunkBoundaries band, int halo, PixelBuffer inputImg, int tileLowerX,
+                                               int tileLowerY) {
+        return new ChunkBoundaries(
+                Math.max(0, band.lowerBoundM() - halo) - tileLowerX,
+                Math.min(inputImg.width() - 1, band.upperBoundM() + halo) - tileLowerX,
+                Math.max(0, band.lowerBoundN() - halo) - tileLowerY,
+                Math.min(inputImg.height() - 1, band.upperBoundN() + halo) - tileLowerY);
+    }
+
+    private static void applyToRow(FilterStage stage, int[] pixels, int offset, int length) {
+        switch (stage.filter()) {
+            case BRIGHTNESS -> PixelKernels.brightness(pixels, offset, pixels, offset, length, stage.amount());
+            case GRAYSCALE -> PixelKernels.grayscale(pixels, offset, pixels, offset, length);
+            default -> throw new IllegalStateException("Not a per-pixel filter: " + stage.filter());
+        }
+    }
+
+    @Override
+    public void copyUntouched(PixelBuffer inputImg, PixelBuffer outputImg, int amount) {
+        // every pixel of a band is written
+    }
+
+    @Override
+    public Object costKey() {
+        return stages;
+    }
+
+    @Override
+    public int halo(int amount) {
+        return halo;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FusedFilter other && stages.equals(other.stages) && originX == other.originX
+                && originY == other.originY;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(stages, originX, originY);
+    }
+}
@@ -0,0 +1,156 @@
+package filters;
+
+import models.ChunkBoundaries;
+import models.ConcurrentImage;
+import models.PixelBuffer;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gaussian blur of radius r, with a standard deviation of r/3 so that the kernel covers three deviations.
+ * <p>
+ * The 2D Gaussian is the product of two 1D ones, so the chunk is blurred in two passes of 2r+1 taps each, O(r)
+ * work per pixel instead of O(r * r): every row of the chunk (plus a halo of r rows above and below) is blurred
+ * horizontally, and the last 2r+1 of those rows are kept in a ring buffer from which each output row is blurred
+ * vertically. Like {@link BoxBlur}, the halo rows are recomputed by the neighbouring chunks instead of being shared,
+ * so every chunk is blurred on its own and any engine can run the filter.
+ * <p>
+ * The kernel is precomputed in fixed point, its weights add up to exactly {@code 1 << WEIGHT_BITS}, and the sums
+ * are integers. The pixels outside the image take the value of the nearest edge pixel.
+ */
+public class GaussianBlurFilter {
+
+    private static final int WEIGHT_BITS = 12;
+    // bits of precision kept after the horizontal pass, so that the vertical pass rounds only once
+    private static final int EXTRA_BITS = 8;
+    private static final int HORIZONTAL_SHIFT = WEIGHT_BITS - EXTRA_BITS;
+    private static final int VERTICAL_SHIFT = WEIGHT_BITS + EXTRA_BITS;
+
+    private static final Map<Integer, int[]> KERNELS = new ConcurrentHashMap<>();
+
+    private GaussianBlurFilter() {
+    }
+
+    public static void exec(PixelBuffer inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg, int radius) {
+        int[] output = PixelKernels.outputOf(inputImg, boundaries, sharedImg);
+        int width = inputImg.width();
+        if (radius <= 0) {
+            int length = boundaries.upperBoundM() - boundaries.lowerBoundM() + 1;
+            for (int y = boundaries.lowerBoundN(); y <= boundaries.upperBoundN(); y++) {
+                int offset = y * width + boundaries.lowerBoundM();
+                System.arraycopy(inputImg.pixels(), offset, output, offset, length);
+            }
+            return;
+        }
+
+        int[] kernel = kernelOf(radius);
+        int window = 2 * radius + 1;
+        int lowerX = boundaries.lowerBoundM();
+        int chunkWidth = boundaries.upperBoundM() - lowerX + 1;
+
+        // a row of the input padded with its edge pixels, one array per channel
+        int[] paddedRed = new int[chunkWidth + 2 * radius];
+        int[] paddedGreen = new int[chunkWidth + 2 * radius];
+        int[] paddedBlue = new int[chunkWidth + 2 * radius];
+
+        // horizontal pass of the rows currently inside the vertical window
+        int[] rowRed = new int[window * chunkWidth];
+        int[] rowGreen = new int[window * chunkWidth];
+        int[] rowBlue = new int[window * chunkWidth];
+
+        // vertical pass of the current output row
+        int[] sumRed = new int[chunkWidth];
+        int[] sumGreen = new int[chunkWidth];
+        int[] sumBlue = new int[chunkWidth];
+
+        int firstRow = boundaries.lowerBoundN() - radius;
+        for (int row = firstRow; row < boundaries.lowerBoundN() + radius; row++) {
+            blurRow(inputImg, row, lowerX, radius, kernel, paddedRed, paddedGreen, paddedBlue,
+                    rowRed, rowGreen, rowBlue, ((row - firstRow) % window) * chunkWidth);
+        }
+
+        for (int y = boundaries.lowerBoundN(); y <= boundaries.upperBoundN(); y++) {
+            int entering = y + radius;
+            blurRow(inputImg, entering, lowerX, radius, kernel, paddedRed, paddedGreen, paddedBlue,
+                    rowRed, rowGreen, rowBlue, ((entering - firstRow) % window) * chunkWidth);
+
+            Arrays.fill(sumRed, 1 << (VERTICAL_SHIFT - 1));
+            Arrays.fill(sumGreen, 1 << (VERTICAL_SHIFT - 1));
+            Arrays.fill(sumBlue, 1 << (VERTICAL_SHIFT - 1));
+            for (int k = 0; k < window; k++) {
+                int weight = kernel[k];
+                int base = ((y - radius + k - firstRow) % window) * chunkWidth;
+                for (int c = 0; c < chunkWidth; c++) {
+                    sumRed[c] += weight * rowRed[base + c];
+                    sumGreen[c] += weight * rowGreen[base + c];
+                    sumBlue[c] += weight * rowBlue[base + c];
+                }
+            }
+
+            int offset = y * width + lowerX;
+            for (int c = 0; c < chunkWidth; c++) {
+                output[offset + c] = PixelBuffer.rgb(sumRed[c] >>> VERTICAL_SHIFT, sumGreen[c] >>> VERTICAL_SHIFT,
+                        sumBlue[c] >>> VERTICAL_SHIFT);
+            }
+        }
+    }
+
+    /**
+     * Blurs horizontally the columns of the chunk in a row of the image, the rows above and below the image being
+     * its first and last rows, and stores them in a slot of the ring buffer.
+     */
+    private static void blurRow(PixelBuffer inputImg, int row, int lowerX, int radius, int[] kernel,
+                                int[] paddedRed, int[] paddedGreen, int[] paddedBlue,
+                                int[] rowRed, int[] rowGreen, int[] rowBlue, int base) {
+        int width = inputImg.width();
+        int[] pixels = inputImg.pixels();
+        int rowOffset = Math.min(inputImg.height() - 1, Math.max(0, row)) * width;
+        int chunkWidth = paddedRed.length - 2 * radius;
+
+        for (int i = 0; i < paddedRed.length; i++) {
+            int pixel = pixels[rowOffset + Math.min(width - 1, Math.max(0, lowerX - radius + i))];
+            paddedRed[i] = PixelBuffer.red(pixel);
+            paddedGreen[i] = PixelBuffer.green(pixel);
+            paddedBlue[i] = PixelBuffer.blue(pixel);
+        }
+
+        for (int c = 0; c < chunkWidth; c++) {
+            int red = 1 << (HORIZONTAL_SHIFT - 1), green = red, blue = red;
+            for (int k = 0; k < kernel.length; k++) {
+                red += kernel[k] * paddedRed[c + k];
+                green += kernel[k] * paddedGreen[c + k];
+                blue += kernel[k] * paddedBlue[c + k];
+            }
+            rowRed[base + c] = red >>> HORIZONTAL_SHIFT;
+            rowGreen[base + c] = green >>> HORIZONTAL_SHIFT;
+            rowBlue[base + c] = blue >>> HORIZONTAL_SHIFT;
+        }
+    }
+
+    /**
+     * Gets the 2r+1 weights of the kernel of a radius, in fixed point.
+     */
+    static int[] kernelOf(int radius) {
+        return KERNELS.computeIfAbsent(radius, key -> {
+            double sigma = radius / 3.0;
+            double[] gaussian = new double[2 * radius + 1];
+            double total = 0;
+            for (int k = -radius; k <= radius; k++) {
+                gaussian[k + radius] = Math.exp(-(k * k) / (2 * sigma * sigma));
+                total += gaussian[k + radius];
+            }
+
+            int[] kernel = new int[2 * radius + 1];
+            int sum = 0;
+            for (int k = 0; k < kernel.length; k++) {
+                kernel[k] = (int) Math.round(gaussian[k] / total * (1 << WEIGHT_BITS));
+                sum += kernel[k];
+            }
+            // the rounding error goes to the centre, so that a flat image stays the same
+            kernel[radius] += (1 << WEIGHT_BITS) - sum;
+            return kernel;
+        });
+    }
+}
@@ -2,37 +2,93 @@ package filters;
 
 import models.ChunkBoundaries;
 import models.ConcurrentImage;
+import models.PixelBuffer;
 
-import java.awt.*;
-import java.util.Random;
-
+/**
+ * Replaces every pixel with a random neighbour at most {@code bias} pixels away.
+ * <p>
+ * The neighbour is drawn from a hash of (seed, x, y) instead of a shared random generator, so the output only
+ * depends on the seed: it is the same for any engine, number of threads or division, and the workers share no
+ * state. Callers that filter a tile of a larger image pass the position of the tile, so that the pixels are
+ * hashed with their coordinates in the whole image.
+ */
 public class GlassFilter {
-    public static void exec(Color[][] inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg, int bias) {
 
-        Random random = new Random();
+    public static final long DEFAULT_SEED = 0x5DEECE66DL;
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    public static void exec(PixelBuffer inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg, int bias) {
+        exec(inputImg, boundaries, sharedImg, bias, DEFAULT_SEED, 0, 0);
+    }
+
+    /**
+     * Gets a glass filter with its own seed, for a tile whose first pixel is at (originX, originY) in the image.
+     */
+    public static Filter seeded(long seed, int originX, int originY) {
+        return new Seeded(seed, originX, originY);
+    }
+
+    private record Seeded(long seed, int originX, int originY) implements Filter {
+
+        @Override
+        public void applyFilter(PixelBuffer inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg, int bias) {
+            exec(inputImg, boundaries, sharedImg, bias, seed, originX, originY);
+        }
+
+        @Override
+        public Object costKey() {
+            // every seed and tile costs the same
+            return GlassFilter.class;
+        }
 
+        @Override
+        public void copyUntouched(PixelBuffer inputImg, PixelBuffer outputImg, int bias) {
+            // every pixel is written
+        }
+
+        @Override
+        public int halo(int bias) {
+            return Math.max(0, bias);
+        }
+    }
+
+    private static void exec(PixelBuffer inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg, int bias,
+                             long seed, int originX, int originY) {
         // Runs through entire matrix
-        for (int x = boundaries.lowerBoundM(); x <= boundaries.upperBoundM(); x++) {
-            for (int y = boundaries.lowerBoundN(); y <= boundaries.upperBoundN(); y++) {
+        for (int y = boundaries.lowerBoundN(); y <= boundaries.upperBoundN(); y++) {
+            for (int x = boundaries.lowerBoundM(); x <= boundaries.upperBoundM(); x++) {
 
-                // gets a random neighbor pixel
+                // gets a random neighbor pixel, the bounds are inclusive
                 int minX = Math.max(x - bias, 0);
-                int maxX = Math.min(x + bias, inputImg.length - 1);
-                int mixY = Math.max(y - bias, 0);
-                int maxY = Math.min(y + bias, inputImg[x].length - 1);
+                int maxX = Math.min(x + bias, inputImg.width() - 1);
+                int minY = Math.max(y - bias, 0);
+                int maxY = Math.min(y + bias, inputImg.height() - 1);
 
-                int randomX = random.nextInt(minX, maxX);
-                int randomY = random.nextInt(mixY, maxY);
+                long random = hash(seed, originX + x, originY + y);
+                int randomX = minX + bounded(random >>> 32, maxX - minX + 1);
+                int randomY = minY + bounded(random & 0xFFFFFFFFL, maxY - minY + 1);
 
                 // replace the actual with that value
-                Color pixel = inputImg[randomX][randomY];
-                int r = pixel.getRed();
-                int g = pixel.getGreen();
-                int b = pixel.getBlue();
-                Color newPixel = new Color(r, g, b);
-
-                sharedImg.updatePixel(x, y, newPixel);
+                sharedImg.updatePixel(x, y, inputImg.get(randomX, randomY));
             }
         }
     }
+
+    /**
+     * SplitMix64 of the seed and the coordinates, 64 well mixed bits per pixel.
+     */
+    static long hash(long seed, int x, int y) {
+        long z = seed + (((long) y << 32) | (x & 0xFFFFFFFFL)) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Maps 32 random bits to [0, range) by multiplication, without the modulo bias of large ranges.
+     */
+    private static int bounded(long random32, int range) {
+        return (int) ((random32 * range) >>> 32);
+    }
 }
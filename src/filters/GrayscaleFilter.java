@@ -2,26 +2,30 @@ package filters;
 
 import models.ChunkBoundaries;
 import models.ConcurrentImage;
-
-import java.awt.*;
+import models.PixelBuffer;
 
 public class GrayscaleFilter {
-    public static void exec(Color[][] inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg, int contrast) {
-        for (int i = boundaries.lowerBoundM(); i <= boundaries.upperBoundM(); i++) {
-            for (int j = boundaries.lowerBoundN(); j <= boundaries.upperBoundN(); j++) {
-
-                // fetches values of each pixel
-                Color pixel = inputImg[i][j];
-                int r = pixel.getRed();
-                int g = pixel.getGreen();
-                int b = pixel.getBlue();
+    public static void exec(PixelBuffer inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg, int contrast) {
+        int[] input = inputImg.pixels();
+        int[] output = PixelKernels.outputOf(inputImg, boundaries, sharedImg);
+        int length = boundaries.upperBoundM() - boundaries.lowerBoundM() + 1;
+        for (int j = boundaries.lowerBoundN(); j <= boundaries.upperBoundN(); j++) {
+            int offset = j * inputImg.width() + boundaries.lowerBoundM();
+            PixelKernels.grayscale(input, offset, output, offset, length);
+        }
+    }
 
-                int average = ((int) (r + g + b) / 3);
+    /**
+     * Converts a single packed RGB pixel to gray.
+     */
+    public static int apply(int pixel) {
+        // fetches values of each pixel
+        int r = PixelBuffer.red(pixel);
+        int g = PixelBuffer.green(pixel);
+        int b = PixelBuffer.blue(pixel);
 
-                Color newPixel = new Color(average, average, average);
+        int average = ((int) (r + g + b) / 3);
 
-                sharedImg.updatePixel(i, j, newPixel);
-            }
-        }
+        return PixelBuffer.rgb(average, average, average);
     }
 }
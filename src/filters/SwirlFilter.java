@@ -2,30 +2,42 @@ package filters;
 
 import models.ChunkBoundaries;
 import models.ConcurrentImage;
-
-import java.awt.*;
+import models.PixelBuffer;
+import utils.ParallelRows;
 
 public class SwirlFilter {
-    public static void exec(Color[][] inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg, int swirlAmount) {
-        int xCenter = inputImg.length / 2;
-        int yCenter = inputImg[0].length / 2;
-
-        for (int i = boundaries.lowerBoundM(); i <= boundaries.upperBoundM(); i++) {
-            for (int j = boundaries.lowerBoundN(); j <= boundaries.upperBoundN(); j++) {
-                double distance = Math.sqrt(Math.pow((i - xCenter), 2) + Math.pow((j - yCenter), 2));
-                double angle = (Math.PI / 256) * distance * swirlAmount;
+    public static void exec(PixelBuffer inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg, int swirlAmount) {
+        int width = inputImg.width();
+        int[] map = SwirlMap.of(width, inputImg.height(), swirlAmount);
+        int[] input = inputImg.pixels();
+        int[] output = PixelKernels.outputOf(inputImg, boundaries, sharedImg);
 
-                int x = (int) ((i - xCenter) * Math.cos(angle) - (j - yCenter) * Math.sin(angle) + xCenter);
-                int y = (int) ((i - xCenter) * Math.sin(angle) + (j - yCenter) * Math.cos(angle) + yCenter);
+        for (int j = boundaries.lowerBoundN(); j <= boundaries.upperBoundN(); j++) {
+            for (int i = boundaries.lowerBoundM(); i <= boundaries.upperBoundM(); i++) {
+                // the pixels whose source is outside the image are not written
+                int source = map[j * width + i];
+                if (source >= 0) {
+                    output[j * width + i] = input[source];
+                }
+            }
+        }
+    }
 
-                if (x < 0) x *= -1;
-                if (y < 0) y *= -1;
+    /**
+     * Copies the pixels whose source is outside the image, the only ones the swirl does not write.
+     */
+    public static void copyUntouched(PixelBuffer inputImg, PixelBuffer outputImg, int swirlAmount) {
+        int width = inputImg.width();
+        int[] map = SwirlMap.of(width, inputImg.height(), swirlAmount);
+        int[] input = inputImg.pixels();
+        int[] output = outputImg.pixels();
 
-                if (x < inputImg.length && y < inputImg[i].length) {
-                    Color newPixel = new Color(inputImg[x][y].getRed(), inputImg[x][y].getGreen(), inputImg[x][y].getBlue());
-                    sharedImg.updatePixel(i, j, newPixel);
+        ParallelRows.forEach(width, inputImg.height(), (firstRow, endRow) -> {
+            for (int i = firstRow * width; i < endRow * width; i++) {
+                if (map[i] < 0) {
+                    output[i] = input[i];
                 }
             }
-        }
+        });
     }
 }
@@ -0,0 +1,107 @@
+package filters;
+
+import utils.ParallelRows;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Displacement map of the swirl: for every pixel, the index of the input pixel it takes its value from, or -1 when
+ * that pixel is outside the image. The map only depends on the size of the image and the swirl amount, so it is
+ * computed once, in parallel, and the swirl of any image of that size is a plain gather.
+ * <p>
+ * The maps are kept in an LRU cache bounded by their total size, an eighth of the maximum heap.
+ */
+public class SwirlMap {
+
+    private record Key(int width, int height, int amount) {
+    }
+
+    private static final long MAX_CACHED_BYTES = Runtime.getRuntime().maxMemory() / 8;
+
+    // access ordered, so the first entry is the least recently used
+    private static final Map<Key, CompletableFuture<int[]>> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedBytes = 0;
+
+    private SwirlMap() {
+    }
+
+    /**
+     * Gets the map of an image size, computing it if it is not cached.
+     * When several threads ask for a map that is not cached, one computes it and the others wait for it.
+     *
+     * @param width       the width of the image.
+     * @param height      the height of the image.
+     * @param swirlAmount the swirl amount.
+     * @return the index of the source pixel of every pixel, in row-major order.
+     */
+    public static int[] of(int width, int height, int swirlAmount) {
+        Key key = new Key(width, height, swirlAmount);
+        CompletableFuture<int[]> map;
+        boolean compute = false;
+        synchronized (CACHE) {
+            map = CACHE.get(key);
+            if (map == null) {
+                map = new CompletableFuture<>();
+                compute = true;
+                CACHE.put(key, map);
+                cachedBytes += 4L * width * height;
+                evict(key);
+            }
+        }
+
+        if (compute) {
+            try {
+                map.complete(compute(width, height, swirlAmount));
+            } catch (Throwable e) {
+                synchronized (CACHE) {
+                    if (CACHE.remove(key, map)) {
+                        cachedBytes -= 4L * width * height;
+                    }
+                }
+                map.completeExceptionally(e);
+            }
+        }
+        return map.join();
+    }
+
+    /**
+     * Drops the least recently used maps until the cache fits its budget, the map just added is always kept.
+     */
+    private static void evict(Key added) {
+        var entries = CACHE.entrySet().iterator();
+        while (cachedBytes > MAX_CACHED_BYTES && entries.hasNext()) {
+            Key key = entries.next().getKey();
+            if (!key.equals(added)) {
+                entries.remove();
+                cachedBytes -= 4L * key.width() * key.height();
+            }
+        }
+    }
+
+    private static int[] compute(int width, int height, int swirlAmount) {
+        int[] map = new int[width * height];
+        int xCenter = width / 2;
+        int yCenter = height / 2;
+
+        ParallelRows.forEach(width, height, (firstRow, endRow) -> {
+            for (int j = firstRow; j < endRow; j++) {
+                for (int i = 0; i < width; i++) {
+                    // the same arithmetic as the original per-pixel swirl, so the result is identical
+                    double distance = Math.sqrt(Math.pow((i - xCenter), 2) + Math.pow((j - yCenter), 2));
+                    double angle = (Math.PI / 256) * distance * swirlAmount;
+
+                    int x = (int) ((i - xCenter) * Math.cos(angle) - (j - yCenter) * Math.sin(angle) + xCenter);
+                    int y = (int) ((i - xCenter) * Math.sin(angle) + (j - yCenter) * Math.cos(angle) + yCenter);
+
+                    if (x < 0) x *= -1;
+                    if (y < 0) y *= -1;
+
+                    map[j * width + i] = x < width && y < height ? y * width + x : -1;
+                }
+            }
+        });
+        return map;
+    }
+}
@@ -1,4 +1,8 @@
 package models;
 
 public record ChunkBoundaries(int lowerBoundM, int upperBoundM, int lowerBoundN, int upperBoundN) {
+
+    public long pixels() {
+        return (long) (upperBoundM - lowerBoundM + 1) * (upperBoundN - lowerBoundN + 1);
+    }
 }
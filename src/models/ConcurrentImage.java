@@ -4,24 +4,42 @@ import java.awt.*;
 
 public class ConcurrentImage {
 
-    private Color[][] image;
+    private final PixelBuffer image;
 
-    public ConcurrentImage(Color[][] image) {
-        if (image == null || image.length == 0 || image[0].length == 0) {
+    public ConcurrentImage(PixelBuffer image) {
+        if (image == null) {
             throw new RuntimeException("Invalid image");
         }
         this.image = image;
     }
 
-    public void updatePixel(int x, int y, Color value) {
-        if (x >= image.length || y >= image[0].length) {
+    /**
+     * Adapter for callers that still work with a Color matrix.
+     */
+    public ConcurrentImage(Color[][] image) {
+        this(PixelBuffer.fromColors(image));
+    }
+
+    public void updatePixel(int x, int y, int rgb) {
+        if (x >= image.width() || y >= image.height()) {
             throw new RuntimeException("Exceed boundaries while updating concurrent image, error");
         }
-        this.image[x][y] = value;
+        this.image.set(x, y, rgb);
     }
 
-    public Color[][] get() {
+    public void updatePixel(int x, int y, Color value) {
+        updatePixel(x, y, value.getRGB() & 0xFFFFFF);
+    }
+
+    public PixelBuffer getBuffer() {
         return this.image;
     }
 
+    /**
+     * Adapter for callers that still work with a Color matrix, it copies the whole image.
+     */
+    public Color[][] get() {
+        return this.image.toColors();
+    }
+
 }
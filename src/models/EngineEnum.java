@@ -0,0 +1,5 @@
+package models;
+
+public enum EngineEnum {
+    SEQUENTIAL, MULTITHREADED, EXECUTOR_BASED, FORK_JOIN, COMPLETABLE_FUTURES, VIRTUAL_THREADS
+}
@@ -0,0 +1,11 @@
+package models;
+
+/**
+ * A filter of a pipeline with the amount it is applied with.
+ */
+public record FilterStage(FiltersEnum filter, int amount) {
+
+    public static FilterStage of(FiltersEnum filter) {
+        return new FilterStage(filter, filter.defaultAmount());
+    }
+}
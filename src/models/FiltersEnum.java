@@ -1,5 +1,19 @@
 package models;
 
 public enum FiltersEnum {
-    BLUR, BRIGHTNESS, CONDITIONAL_BLUR, GLASS, GRAYSCALE, SWIRL
+    BLUR(5), BRIGHTNESS(70), CONDITIONAL_BLUR(10), GAUSSIAN_BLUR(5), GLASS(2), GRAYSCALE(5), SWIRL(2);
+
+    private final int defaultAmount;
+
+    FiltersEnum(int defaultAmount) {
+        this.defaultAmount = defaultAmount;
+    }
+
+    /**
+     * The amount used by the drivers: blur radius, brightness increment, glass bias, grayscale contrast
+     * or swirl amount. The radius of the Gaussian blur is three standard deviations.
+     */
+    public int defaultAmount() {
+        return defaultAmount;
+    }
 }
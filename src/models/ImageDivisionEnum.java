@@ -2,6 +2,6 @@ package models;
 
 public enum ImageDivisionEnum {
 
-    VERTICAL, HORIZONTAL, RECTANGULAR
+    VERTICAL, HORIZONTAL, RECTANGULAR, TILED
 
 }
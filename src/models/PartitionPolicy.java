@@ -0,0 +1,26 @@
+package models;
+
+/**
+ * How an engine splits an image: the division method plus either a fixed number of chunks
+ * (multithreading, completable futures) or a threshold in pixels under which a chunk is no longer split
+ * (executor-based, fork-join pool). A threshold of 0 lets the engine compute it for the image and filter.
+ * With the {@link ImageDivisionEnum#TILED} division, 0 chunks means one chunk per cache-sized tile.
+ */
+public record PartitionPolicy(ImageDivisionEnum division, int numOfChunks, int threshold) {
+
+    public static PartitionPolicy ofChunks(ImageDivisionEnum division, int numOfChunks) {
+        return new PartitionPolicy(division, numOfChunks, 0);
+    }
+
+    public static PartitionPolicy ofThreshold(ImageDivisionEnum division, int threshold) {
+        return new PartitionPolicy(division, 0, threshold);
+    }
+
+    public static PartitionPolicy adaptive(ImageDivisionEnum division) {
+        return new PartitionPolicy(division, 0, 0);
+    }
+
+    public boolean isAdaptive() {
+        return threshold <= 0;
+    }
+}
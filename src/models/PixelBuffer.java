@@ -0,0 +1,103 @@
+package models;
+
+import java.awt.*;
+
+/**
+ * Flat, row-major image where every pixel is stored as a packed RGB int (0xRRGGBB, alpha ignored),
+ * at index {@code y * width + x}.
+ * The x axis matches the M bounds of a {@link ChunkBoundaries} and the y axis matches the N bounds.
+ */
+public class PixelBuffer {
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    public PixelBuffer(int width, int height) {
+        this(width, height, new int[width * height]);
+    }
+
+    public PixelBuffer(int width, int height, int[] pixels) {
+        if (width <= 0 || height <= 0 || pixels == null || pixels.length != width * height) {
+            throw new RuntimeException("Invalid image");
+        }
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * Builds a pixel buffer from a Color matrix indexed as [x][y].
+     *
+     * @param image the matrix of Colors
+     * @return the packed pixel buffer
+     */
+    public static PixelBuffer fromColors(Color[][] image) {
+        if (image == null || image.length == 0 || image[0].length == 0) {
+            throw new RuntimeException("Invalid image");
+        }
+        PixelBuffer buffer = new PixelBuffer(image.length, image[0].length);
+        for (int y = 0; y < buffer.height; y++) {
+            for (int x = 0; x < buffer.width; x++) {
+                buffer.pixels[y * buffer.width + x] = image[x][y].getRGB() & 0xFFFFFF;
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Converts the buffer back to a Color matrix indexed as [x][y].
+     * Only meant for callers that were not yet migrated, it allocates one Color per pixel.
+     *
+     * @return the matrix of Colors
+     */
+    public Color[][] toColors() {
+        Color[][] result = new Color[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                result[x][y] = new Color(pixels[y * width + x]);
+            }
+        }
+        return result;
+    }
+
+    public PixelBuffer copy() {
+        return new PixelBuffer(width, height, pixels.clone());
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int[] pixels() {
+        return pixels;
+    }
+
+    public int get(int x, int y) {
+        return pixels[y * width + x];
+    }
+
+    public void set(int x, int y, int rgb) {
+        pixels[y * width + x] = rgb;
+    }
+
+    public static int red(int rgb) {
+        return (rgb >> 16) & 0xFF;
+    }
+
+    public static int green(int rgb) {
+        return (rgb >> 8) & 0xFF;
+    }
+
+    public static int blue(int rgb) {
+        return rgb & 0xFF;
+    }
+
+    public static int rgb(int r, int g, int b) {
+        return (r << 16) | (g << 8) | b;
+    }
+}
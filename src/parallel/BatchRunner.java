@@ -0,0 +1,286 @@
+package parallel;
+
+import filters.Filter;
+import filters.FilterFactory;
+import models.ChunkBoundaries;
+import models.ConcurrentImage;
+import models.FilterStage;
+import models.FiltersEnum;
+import models.ImageDivisionEnum;
+import models.PixelBuffer;
+import utils.AsyncImageWriter;
+import utils.EngineMetrics;
+import utils.ImageUtils;
+import utils.PixelBufferPool;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Applies filters to many images with pools that live as long as the runner.
+ * <p>
+ * Images are decoded by a few loader threads, every image x filter job runs as a {@link FilterRecursiveAction} on
+ * one shared fork-join pool and the results are encoded by an {@link AsyncImageWriter} for each run. The jobs balance
+ * themselves: a small image is cheaper than the adaptive threshold and runs as a single task, so many of them run
+ * side by side, while a huge image is split across the workers, unless the pool already has enough queued work.
+ * The largest images are started first so that they do not end up alone at the end of the batch. The pixels of the
+ * images decoded and of their outputs not yet written are bounded to keep the heap under control, and the outputs
+ * are taken from a {@link PixelBufferPool} so that the next images reuse them once they are written.
+ */
+public class BatchRunner implements AutoCloseable {
+
+    private static final List<String> IMAGE_SUFFIXES = List.of(".jpg", ".jpeg", ".png", ".bmp", ".gif");
+
+    public record JobResult(String input, FiltersEnum filter, long pixels, long filterNanos, long endToEndNanos) {
+    }
+
+    public record Report(int images, int jobs, int failures, long pixels, long elapsedNanos, List<JobResult> results) {
+
+        public double imagesPerSecond() {
+            return images / (elapsedNanos / 1e9);
+        }
+
+        public double megapixelsPerSecond() {
+            return pixels / 1e6 / (elapsedNanos / 1e9);
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final ExecutorService loaders;
+    private final int ioThreads;
+    private final long maxPixelsInFlight;
+    private final PixelBufferPool outputBuffers;
+    private final EngineMetrics metrics = new EngineMetrics();
+    private long pixelsInFlight = 0;
+
+    /**
+     * @param parallelism       the number of workers of the fork-join pool.
+     * @param ioThreads         the number of threads that decode and the number of threads that encode images.
+     * @param maxPixelsInFlight how many pixels of the images decoded and of their outputs can be in memory and not
+     *                          yet written at the same time, an image that needs more is processed alone.
+     */
+    public BatchRunner(int parallelism, int ioThreads, long maxPixelsInFlight) {
+        if (maxPixelsInFlight <= 0) {
+            throw new IllegalArgumentException("Invalid number of pixels in flight");
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.loaders = Executors.newFixedThreadPool(ioThreads);
+        this.ioThreads = ioThreads;
+        this.maxPixelsInFlight = maxPixelsInFlight;
+        // the budget bounds the outputs in use, the pool only keeps the free ones of the size asked for last
+        this.outputBuffers = new PixelBufferPool(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the images to process: every image of a directory, or every path listed in a manifest file,
+     * one per line, where empty lines and lines starting with # are skipped.
+     *
+     * @param path a directory or a manifest file.
+     * @return the paths of the images.
+     */
+    public static List<String> inputsOf(String path) {
+        File file = new File(path);
+        if (file.isDirectory()) {
+            File[] images = file.listFiles(f -> f.isFile()
+                    && IMAGE_SUFFIXES.stream().anyMatch(suffix -> f.getName().toLowerCase().endsWith(suffix)));
+            List<String> inputs = new ArrayList<>();
+            for (var image : images == null ? new File[0] : images) {
+                inputs.add(image.getPath());
+            }
+            Collections.sort(inputs);
+            return inputs;
+        }
+        try {
+            return Files.readAllLines(Path.of(path)).stream()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the manifest " + path, e);
+        }
+    }
+
+    /**
+     * Applies every stage to every image, each stage on the original image, and writes the results as
+     * {@code <image>_<filter>_batch.jpg} files.
+     *
+     * @param inputs        the paths of the images.
+     * @param stages        the filters to apply to each image.
+     * @param division      how the large images are split.
+     * @param outputDirPath the directory of the results.
+     * @return the throughput and the time of every job, the images that could not be read count as failures.
+     */
+    public Report run(List<String> inputs, List<FilterStage> stages, ImageDivisionEnum division, String outputDirPath) {
+        long start = System.nanoTime();
+        new File(outputDirPath).mkdirs();
+        // the pixel budget bounds the outputs waiting to be written, so the queue has room for every job and the
+        // workers never block on it
+        AsyncImageWriter writer = new AsyncImageWriter(ioThreads, Math.max(1, inputs.size() * stages.size()));
+
+        Map<String, Long> sizes = pixelsOf(inputs);
+        List<JobResult> results = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Long>> images = new ArrayList<>();
+        for (var input : largestFirst(inputs, sizes)) {
+            // the decoded image and one output per stage
+            long imagePixelsInFlight = sizes.get(input) * (1 + stages.size());
+            admit(imagePixelsInFlight);
+            long imageStart = System.nanoTime();
+            CompletableFuture<PixelBuffer> loaded = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return ImageUtils.readPixels(input);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, loaders);
+
+            List<CompletableFuture<Void>> jobs = new ArrayList<>();
+            for (var stage : stages) {
+                String outputPath = outputDirPath + nameOf(input) + "_" + stage.filter().name().toLowerCase() + "_batch.jpg";
+                jobs.add(loaded
+                        .thenApplyAsync(image -> filter(image, stage, division), pool)
+                        .thenCompose(job -> {
+                            CompletableFuture<Long> written = writer.write(job.output(), outputPath);
+                            outputBuffers.releaseWhenDone(job.output(), written);
+                            return written.thenAccept(doneAt -> results.add(new JobResult(input, stage.filter(),
+                                    job.pixels(), job.filterNanos(), doneAt - imageStart)));
+                        }));
+            }
+            images.add(CompletableFuture.allOf(jobs.toArray(new CompletableFuture<?>[0]))
+                    .handle((done, error) -> {
+                        release(imagePixelsInFlight);
+                        if (error != null) {
+                            System.out.println("Could not process image " + input + ": " + error.getMessage());
+                        }
+                        return error == null ? loaded.join().width() * (long) loaded.join().height() : -1L;
+                    }));
+        }
+
+        long pixels = 0;
+        int failures = 0;
+        for (var image : images) {
+            long imagePixels = image.join();
+            if (imagePixels < 0) {
+                failures++;
+            } else {
+                pixels += imagePixels;
+            }
+        }
+        writer.close();
+        return new Report(images.size() - failures, results.size(), failures, pixels, System.nanoTime() - start,
+                List.copyOf(results));
+    }
+
+    private record FilteredImage(PixelBuffer output, long pixels, long filterNanos) {
+    }
+
+    /**
+     * Runs on a worker of the pool, so the recursive action is invoked in place and forks into the same pool.
+     */
+    private FilteredImage filter(PixelBuffer image, FilterStage stage, ImageDivisionEnum division) {
+        Filter filter = FilterFactory.of(stage.filter());
+        PixelBuffer outputBuffer = outputBuffers.acquireFor(filter, stage.amount(), image);
+        try {
+            ConcurrentImage outputImg = new ConcurrentImage(outputBuffer);
+            ChunkBoundaries imageAsChunk = new ChunkBoundaries(0, image.width() - 1, 0, image.height() - 1);
+            int threshold = ThresholdEstimator.threshold(filter, stage.amount(), image, pool.getParallelism());
+
+            long start = System.nanoTime();
+            EngineMetrics.Execution execution = metrics.begin();
+            new FilterRecursiveAction(image, imageAsChunk, outputImg, division, filter, threshold, stage.amount(),
+                    execution).invoke();
+            // the workers run the other jobs at the same time, their idle time is not the one of this job
+            execution.end(0, 0);
+            return new FilteredImage(outputBuffer, (long) image.width() * image.height(), System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            outputBuffers.release(outputBuffer);
+            throw e;
+        }
+    }
+
+    /**
+     * Waits until the pixels of an image fit in the budget, an image larger than the whole budget waits for the
+     * others to be done and is processed alone.
+     */
+    private synchronized void admit(long pixels) {
+        boolean interrupted = false;
+        while (pixelsInFlight > 0 && pixelsInFlight + pixels > maxPixelsInFlight) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        pixelsInFlight += pixels;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void release(long pixels) {
+        pixelsInFlight -= pixels;
+        notifyAll();
+    }
+
+    /**
+     * Gets the number of pixels of the images, read from their headers, 0 for the unreadable ones.
+     */
+    private static Map<String, Long> pixelsOf(List<String> inputs) {
+        Map<String, Long> sizes = new HashMap<>();
+        for (var input : inputs) {
+            try {
+                Dimension size = ImageUtils.sizeOf(input);
+                sizes.put(input, (long) size.width * size.height);
+            } catch (IOException e) {
+                sizes.put(input, 0L);
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Sorts the images by number of pixels, the unreadable ones go last.
+     */
+    private static List<String> largestFirst(List<String> inputs, Map<String, Long> sizes) {
+        String[] sorted = inputs.toArray(new String[0]);
+        Arrays.sort(sorted, Comparator.<String, Long>comparing(sizes::get).reversed());
+        return List.of(sorted);
+    }
+
+    private static String nameOf(String path) {
+        String name = new File(path).getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Gets what the filter jobs did, one execution per job.
+     */
+    public EngineMetrics metrics() {
+        return metrics;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    @Override
+    public void close() {
+        loaders.shutdown();
+        pool.shutdown();
+    }
+}
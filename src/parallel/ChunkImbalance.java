@@ -0,0 +1,42 @@
+package parallel;
+
+/**
+ * How evenly the chunks of an execution took time: with one task per chunk the slowest chunk sets the runtime, so
+ * the further {@link #ratio()} is from 1 the more time the other tasks spent waiting for it.
+ *
+ * @param chunks     the number of chunks.
+ * @param minNanos   the time of the fastest chunk.
+ * @param maxNanos   the time of the slowest chunk.
+ * @param meanNanos  the mean time of the chunks.
+ */
+public record ChunkImbalance(int chunks, long minNanos, long maxNanos, long meanNanos) {
+
+    /**
+     * Summarizes the times of the chunks of an execution.
+     */
+    public static ChunkImbalance of(long[] chunkNanos) {
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        long sum = 0;
+        for (long nanos : chunkNanos) {
+            min = Math.min(min, nanos);
+            max = Math.max(max, nanos);
+            sum += nanos;
+        }
+        return chunkNanos.length == 0
+                ? new ChunkImbalance(0, 0, 0, 0)
+                : new ChunkImbalance(chunkNanos.length, min, max, sum / chunkNanos.length);
+    }
+
+    /**
+     * Gets the time of the slowest chunk over the mean time, 1 when every chunk took the same time.
+     */
+    public double ratio() {
+        return meanNanos == 0 ? 1 : (double) maxNanos / meanNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.2f", ratio());
+    }
+}
@@ -0,0 +1,72 @@
+package parallel;
+
+import filters.Filter;
+import models.ChunkBoundaries;
+import models.ConcurrentImage;
+import models.PartitionPolicy;
+import models.PixelBuffer;
+import utils.EngineMetrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Runs one asynchronous task per chunk on a fixed thread pool and waits for all of them.
+ */
+public class CompletableFuturesEngine implements ExecutionEngine {
+
+    private final ThreadPoolExecutor executor;
+    private final int numOfThreads;
+    private final EngineMetrics metrics = new EngineMetrics();
+    private volatile ChunkImbalance lastImbalance;
+
+    public CompletableFuturesEngine(int numOfThreads) {
+        this.executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(numOfThreads);
+        this.numOfThreads = numOfThreads;
+    }
+
+    @Override
+    public EngineMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public ChunkImbalance lastImbalance() {
+        return lastImbalance;
+    }
+
+    @Override
+    public void execute(Filter filter, int amount, PixelBuffer inputImg, ConcurrentImage outputImg, PartitionPolicy policy) {
+        ChunkBoundaries[] chunks = Partitioner.chunksOf(filter, amount, inputImg, policy.numOfChunks(), policy.division());
+        CompletableFuture<?>[] chunkFutures = new CompletableFuture<?>[chunks.length];
+        long[] chunkNanos = new long[chunks.length];
+        EngineMetrics.Execution execution = metrics.begin();
+
+        for (int i = 0; i < chunks.length; i++) {
+            var chunk = chunks[i];
+            int index = i;
+            chunkFutures[i] = CompletableFuture.runAsync(() -> {
+                execution.recordQueueDepth(executor.getQueue().size());
+                long start = System.nanoTime();
+                filter.applyFilter(inputImg, chunk, outputImg, amount);
+                chunkNanos[index] = System.nanoTime() - start;
+                execution.recordTask(chunk.pixels(), chunkNanos[index]);
+            }, executor);
+        }
+
+        try {
+            CompletableFuture.allOf(chunkFutures).join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Error while applying the filter", e.getCause());
+        }
+        execution.end(numOfThreads, 0);
+        lastImbalance = ChunkImbalance.of(chunkNanos);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,54 @@
+package parallel;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Counts the tasks of a decomposition that are still pending, so that the caller can wait for all of them
+ * without any task waiting on its children.
+ * It starts with one pending task (the root), every task that splits adds its children before submitting them,
+ * and every task marks itself done once it has processed or split its chunk.
+ * The completion waits for every task even when one fails, so that no task still writes to the output once the
+ * caller has been told about the error.
+ */
+public class CompletionCounter {
+
+    private final AtomicInteger pending = new AtomicInteger(1);
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final AtomicReference<Throwable> firstError = new AtomicReference<>();
+
+    public void fork(int tasks) {
+        pending.addAndGet(tasks);
+    }
+
+    public void taskDone() {
+        if (pending.decrementAndGet() == 0) {
+            Throwable error = firstError.get();
+            if (error == null) {
+                completion.complete(null);
+            } else {
+                completion.completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * Fails the decomposition with the first error once every task is done, the tasks that are still pending skip
+     * their chunk.
+     */
+    public void taskFailed(Throwable error) {
+        if (!firstError.compareAndSet(null, error) && firstError.get() != error) {
+            firstError.get().addSuppressed(error);
+        }
+        taskDone();
+    }
+
+    public boolean hasFailed() {
+        return firstError.get() != null;
+    }
+
+    public CompletableFuture<Void> completion() {
+        return completion;
+    }
+}
@@ -0,0 +1,190 @@
+package parallel;
+
+import filters.ConditionalMask;
+import filters.Filter;
+import filters.FilterFactory;
+import filters.SwirlMap;
+import models.ChunkBoundaries;
+import models.FiltersEnum;
+import models.PixelBuffer;
+import utils.ParallelRows;
+
+/**
+ * Estimated cost of a filter over the cells of an image, a grid of {@link #CELL_SIZE} pixel squares.
+ * <p>
+ * The cost of a cell is the sum of the cost of its pixels, estimated from one pixel out of
+ * {@link #SAMPLE_STEP} in both directions. The box blur, glass, brightness and grayscale filters do the same work
+ * for every pixel and have no model, they are split by area. The swirl only writes the pixels whose source is in
+ * the image, the others cost a fraction of a written pixel. The conditional blur blurs the whole of the tiles that
+ * hold a pixel to blur, found with a {@link ConditionalMask}, and only scans the others.
+ */
+class CostModel {
+
+    static final int CELL_SIZE = 32;
+    private static final int SAMPLE_STEP = 4;
+    // cost of a swirl pixel that is not written, relative to one that is
+    private static final double SKIPPED_SWIRL_COST = 0.25;
+    // cost of a conditional blur pixel in a tile that is only scanned, relative to one in a tile that is blurred
+    private static final double SCANNED_TILE_COST = 0.1;
+
+    private interface PixelCost {
+        double of(int index);
+    }
+
+    private final int width;
+    private final int height;
+    private final int cellColumns;
+    private final int cellRows;
+    // cells[cellY * cellColumns + cellX]
+    private final double[] cells;
+
+    private CostModel(int width, int height, double[] cells) {
+        this.width = width;
+        this.height = height;
+        this.cellColumns = (width + CELL_SIZE - 1) / CELL_SIZE;
+        this.cellRows = (height + CELL_SIZE - 1) / CELL_SIZE;
+        this.cells = cells;
+    }
+
+    /**
+     * Estimates the cost of a filter over an image.
+     *
+     * @return the model, or null when every pixel costs the same.
+     */
+    static CostModel of(Filter filter, int amount, PixelBuffer inputImg) {
+        if (filter == FilterFactory.of(FiltersEnum.CONDITIONAL_BLUR)) {
+            return of(ConditionalMask.of(inputImg));
+        }
+        if (filter == FilterFactory.of(FiltersEnum.SWIRL)) {
+            int[] map = SwirlMap.of(inputImg.width(), inputImg.height(), amount);
+            return sampled(inputImg.width(), inputImg.height(), index -> map[index] >= 0 ? 1 : SKIPPED_SWIRL_COST);
+        }
+        return null;
+    }
+
+    /**
+     * Estimates the cost of the conditional blur over the image of a mask.
+     */
+    static CostModel of(ConditionalMask mask) {
+        int width = mask.width();
+        return sampled(width, mask.height(),
+                index -> mask.isTileBlurred(index % width, index / width) ? 1 : SCANNED_TILE_COST);
+    }
+
+    private static CostModel sampled(int width, int height, PixelCost pixelCost) {
+        int cellColumns = (width + CELL_SIZE - 1) / CELL_SIZE;
+        double[] cells = new double[cellColumns * ((height + CELL_SIZE - 1) / CELL_SIZE)];
+
+        // one band per row of cells
+        ParallelRows.forEach(width * CELL_SIZE, cells.length / cellColumns, (firstCellRow, endCellRow) -> {
+            for (int cellY = firstCellRow; cellY < endCellRow; cellY++) {
+                int lowerY = cellY * CELL_SIZE;
+                int upperY = Math.min(height, lowerY + CELL_SIZE);
+                for (int cellX = 0; cellX < cellColumns; cellX++) {
+                    int lowerX = cellX * CELL_SIZE;
+                    int upperX = Math.min(width, lowerX + CELL_SIZE);
+                    double sampled = 0;
+                    int samples = 0;
+                    for (int y = lowerY; y < upperY; y += SAMPLE_STEP) {
+                        for (int x = lowerX; x < upperX; x += SAMPLE_STEP) {
+                            sampled += pixelCost.of(y * width + x);
+                            samples++;
+                        }
+                    }
+                    cells[cellY * cellColumns + cellX] = sampled / samples * (upperX - lowerX) * (upperY - lowerY);
+                }
+            }
+        });
+        return new CostModel(width, height, cells);
+    }
+
+    /**
+     * Gets the cost of every row of cells, over the columns of an area.
+     * The cells the area only partly covers count for the part it covers.
+     */
+    double[] rowCosts(ChunkBoundaries area) {
+        double[] costs = new double[cellRows];
+        for (int cellX = 0; cellX < cellColumns; cellX++) {
+            double covered = covered(cellX, area.lowerBoundM(), area.upperBoundM(), width);
+            if (covered > 0) {
+                for (int cellY = 0; cellY < cellRows; cellY++) {
+                    costs[cellY] += covered * cells[cellY * cellColumns + cellX];
+                }
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * Gets the cost of every column of cells, over the rows of an area.
+     */
+    double[] columnCosts(ChunkBoundaries area) {
+        double[] costs = new double[cellColumns];
+        for (int cellY = 0; cellY < cellRows; cellY++) {
+            double covered = covered(cellY, area.lowerBoundN(), area.upperBoundN(), height);
+            if (covered > 0) {
+                for (int cellX = 0; cellX < cellColumns; cellX++) {
+                    costs[cellX] += covered * cells[cellY * cellColumns + cellX];
+                }
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * Gets the fraction of a cell, along one axis, between two bounds.
+     */
+    private static double covered(int cell, int lower, int upper, int length) {
+        int cellLower = cell * CELL_SIZE;
+        int cellUpper = Math.min(length, cellLower + CELL_SIZE) - 1;
+        int overlap = Math.min(upper, cellUpper) - Math.max(lower, cellLower) + 1;
+        return overlap <= 0 ? 0 : (double) overlap / (cellUpper - cellLower + 1);
+    }
+
+    /**
+     * Splits a range of pixels along an axis in parts of about the same cost, the cost of a cell being spread
+     * evenly over its pixels.
+     *
+     * @param costs  the cost of every cell along the axis.
+     * @param lower  the first pixel of the range.
+     * @param upper  the last pixel of the range.
+     * @param length the length of the image along the axis.
+     * @param parts  the number of parts, at most the number of pixels of the range.
+     * @return the first pixel of every part.
+     */
+    static int[] cuts(double[] costs, int lower, int upper, int length, int parts) {
+        // cost of the range before every pixel boundary is interpolated from the cumulated cost of the cells
+        double[] before = new double[costs.length + 1];
+        for (int cell = 0; cell < costs.length; cell++) {
+            before[cell + 1] = before[cell] + costs[cell] * covered(cell, lower, upper, length);
+        }
+        double total = before[costs.length];
+
+        int[] firsts = new int[parts];
+        firsts[0] = lower;
+        int cell = lower / CELL_SIZE;
+        for (int i = 1; i < parts; i++) {
+            double target = total * i / parts;
+            while (cell < costs.length - 1 && before[cell + 1] < target) {
+                cell++;
+            }
+            int cellLower = Math.max(lower, cell * CELL_SIZE);
+            int cellUpper = Math.min(upper, Math.min(length, (cell + 1) * CELL_SIZE) - 1);
+            double cellCost = before[cell + 1] - before[cell];
+            int offset = cellCost > 0
+                    ? (int) Math.round((target - before[cell]) / cellCost * (cellUpper - cellLower + 1))
+                    : 0;
+            // every part keeps at least one pixel
+            firsts[i] = Math.max(firsts[i - 1] + 1, Math.min(upper - (parts - i) + 1, cellLower + offset));
+        }
+        return firsts;
+    }
+
+    int width() {
+        return width;
+    }
+
+    int height() {
+        return height;
+    }
+}
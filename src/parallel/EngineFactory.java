@@ -0,0 +1,27 @@
+package parallel;
+
+import models.EngineEnum;
+
+public class EngineFactory {
+
+    private EngineFactory() {
+    }
+
+    /**
+     * Creates an execution engine.
+     *
+     * @param engine       the engine to create.
+     * @param numOfThreads the number of threads of the engines that own a pool, ignored by the others.
+     * @return the engine, to be closed once it is no longer needed.
+     */
+    public static ExecutionEngine of(EngineEnum engine, int numOfThreads) {
+        return switch (engine) {
+            case SEQUENTIAL -> new SequentialEngine();
+            case MULTITHREADED -> new MultithreadedEngine();
+            case EXECUTOR_BASED -> new ExecutorEngine(numOfThreads);
+            case FORK_JOIN -> new ForkJoinEngine(numOfThreads);
+            case COMPLETABLE_FUTURES -> new CompletableFuturesEngine(numOfThreads);
+            case VIRTUAL_THREADS -> new VirtualThreadEngine();
+        };
+    }
+}
@@ -0,0 +1,56 @@
+package parallel;
+
+import filters.Filter;
+import models.ConcurrentImage;
+import models.PartitionPolicy;
+import models.PixelBuffer;
+import utils.EngineMetrics;
+
+/**
+ * Applies a filter to a whole image, each implementation uses a different parallelization strategy.
+ * Engines that own threads keep them between executions and release them on {@link #close()}.
+ */
+public interface ExecutionEngine extends AutoCloseable {
+
+    /**
+     * Applies the filter to the input image and writes the result to the output image.
+     *
+     * @param filter    the filter to apply.
+     * @param amount    the amount passed to the filter.
+     * @param inputImg  the image to read from.
+     * @param outputImg the image to write to, pixels the filter does not write are left untouched.
+     * @param policy    how the image is split between the tasks.
+     */
+    void execute(Filter filter, int amount, PixelBuffer inputImg, ConcurrentImage outputImg, PartitionPolicy policy);
+
+    /**
+     * Applies the filter to a new image, only the pixels the filter does not write are copied from the input.
+     *
+     * @return the filtered image.
+     */
+    default PixelBuffer apply(Filter filter, int amount, PixelBuffer inputImg, PartitionPolicy policy) {
+        PixelBuffer outputBuffer = new PixelBuffer(inputImg.width(), inputImg.height());
+        filter.copyUntouched(inputImg, outputBuffer, amount);
+        ConcurrentImage outputImg = new ConcurrentImage(outputBuffer);
+        execute(filter, amount, inputImg, outputImg, policy);
+        return outputImg.getBuffer();
+    }
+
+    /**
+     * Gets what the engine did during its executions, recorded from every task.
+     */
+    EngineMetrics metrics();
+
+    /**
+     * Gets how evenly the chunks of the last execution took time.
+     *
+     * @return the imbalance, or null when the engine does not run one task per chunk.
+     */
+    default ChunkImbalance lastImbalance() {
+        return null;
+    }
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,69 @@
+package parallel;
+
+import filters.Filter;
+import models.ChunkBoundaries;
+import models.ConcurrentImage;
+import models.PartitionPolicy;
+import models.PixelBuffer;
+import utils.EngineMetrics;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Splits the image recursively with {@link FilterCallable} tasks on a fixed thread pool.
+ * Only the calling thread waits, the workers never block on other tasks.
+ */
+public class ExecutorEngine implements ExecutionEngine {
+
+    private final ExecutorService executor;
+    private final int numOfThreads;
+    private final EngineMetrics metrics = new EngineMetrics();
+
+    public ExecutorEngine(int numOfThreads) {
+        this.executor = Executors.newFixedThreadPool(numOfThreads);
+        this.numOfThreads = numOfThreads;
+    }
+
+    @Override
+    public void execute(Filter filter, int amount, PixelBuffer inputImg, ConcurrentImage outputImg, PartitionPolicy policy) {
+        ChunkBoundaries imageAsChunk = new ChunkBoundaries(0, inputImg.width() - 1, 0, inputImg.height() - 1);
+        int threshold = thresholdOf(filter, amount, inputImg, policy);
+
+        CompletionCounter counter = new CompletionCounter();
+        EngineMetrics.Execution execution = metrics.begin();
+
+        try {
+            long start = System.nanoTime();
+            executor.submit(new FilterCallable(inputImg, imageAsChunk, outputImg, policy.division(), executor, filter,
+                    counter, threshold, amount, execution));
+            counter.completion().join();
+            execution.end(numOfThreads, 0);
+            ThresholdEstimator.record(filter, amount, (long) inputImg.width() * inputImg.height(),
+                    System.nanoTime() - start, numOfThreads);
+        } catch (CompletionException e) {
+            throw new RuntimeException("Error while applying the filter", e.getCause());
+        }
+    }
+
+    /**
+     * Gets the threshold of the policy, or computes it if the policy is adaptive.
+     */
+    public int thresholdOf(Filter filter, int amount, PixelBuffer inputImg, PartitionPolicy policy) {
+        if (!policy.isAdaptive()) {
+            return policy.threshold();
+        }
+        return ThresholdEstimator.threshold(filter, amount, inputImg, numOfThreads);
+    }
+
+    @Override
+    public EngineMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
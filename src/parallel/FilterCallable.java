@@ -4,67 +4,103 @@ import filters.Filter;
 import models.ChunkBoundaries;
 import models.ConcurrentImage;
 import models.ImageDivisionEnum;
+import models.PixelBuffer;
+import utils.EngineMetrics;
 
-import java.awt.*;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import static utils.DataDecompositionUtils.getChunksOf;
 
+/**
+ * Splits a chunk until it is under the threshold, submitting every sub-chunk to the executor.
+ * A callable never waits for its children: it registers them in the {@link CompletionCounter} and returns,
+ * so small thresholds and small pools cannot starve the pool of workers. The caller waits on the counter.
+ */
 public class FilterCallable implements Callable<Void> {
 
-    private final Color[][] inputImg;
+    private final PixelBuffer inputImg;
     private final ChunkBoundaries boundaries;
     private final ConcurrentImage sharedImg;
     private final ImageDivisionEnum imgDivision;
     private final ExecutorService executor;
     private final Filter filter;
+    private final CompletionCounter counter;
     private final int threshold;
     private final int amount;
+    private final EngineMetrics.Execution execution;
 
-    public FilterCallable(Color[][] inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg,
-                          ImageDivisionEnum imgDivision, ExecutorService executor, Filter filter, int threshold, int amount) {
+    public FilterCallable(PixelBuffer inputImg, ChunkBoundaries boundaries, ConcurrentImage sharedImg,
+                          ImageDivisionEnum imgDivision, ExecutorService executor, Filter filter,
+                          CompletionCounter counter, int threshold, int amount, EngineMetrics.Execution execution) {
         this.inputImg = inputImg;
         this.boundaries = boundaries;
         this.sharedImg = sharedImg;
         this.imgDivision = imgDivision;
         this.executor = executor;
         this.filter = filter;
+        this.counter = counter;
         this.threshold = threshold;
         this.amount = amount;
+        this.execution = execution;
     }
 
     @Override
-    public Void call() throws ExecutionException, InterruptedException {
-        int xLength = boundaries.upperBoundN() - boundaries.lowerBoundN() + 1;
-        int yLength = boundaries.upperBoundM() - boundaries.lowerBoundM() + 1;
-        int pixels = xLength * yLength;
-        List<Future<Void>> results = new ArrayList<>();
+    public Void call() {
+        if (counter.hasFailed()) {
+            counter.taskDone();
+            return null;
+        }
+
+        int unsubmitted = 0;
+        try {
+            int xLength = boundaries.upperBoundN() - boundaries.lowerBoundN() + 1;
+            int yLength = boundaries.upperBoundM() - boundaries.lowerBoundM() + 1;
+            int pixels = xLength * yLength;
 
-        if (pixels < threshold) {
-            filter.applyFilter(inputImg, boundaries, sharedImg, amount);
-        } else {
-            ChunkBoundaries[] chunks;
-            if (imgDivision == ImageDivisionEnum.RECTANGULAR) {
-                chunks = getChunksOf(boundaries, 4, imgDivision);
+            if (pixels < threshold || !canSplit(xLength, yLength)) {
+                if (executor instanceof ThreadPoolExecutor pool) {
+                    execution.recordQueueDepth(pool.getQueue().size());
+                }
+                long start = System.nanoTime();
+                filter.applyFilter(inputImg, boundaries, sharedImg, amount);
+                execution.recordTask(pixels, System.nanoTime() - start);
             } else {
-                chunks = getChunksOf(boundaries, 2, imgDivision);
-            }
+                ChunkBoundaries[] chunks;
+                if (imgDivision == ImageDivisionEnum.RECTANGULAR || imgDivision == ImageDivisionEnum.TILED) {
+                    chunks = getChunksOf(boundaries, 4, imgDivision);
+                } else {
+                    chunks = getChunksOf(boundaries, 2, imgDivision);
+                }
 
-            for (var chunk : chunks) {
-                FilterCallable nextTask = new FilterCallable(inputImg, chunk, sharedImg, imgDivision, executor,
-                        filter, threshold, amount);
-                results.add(executor.submit(nextTask));
+                // the children are counted before any of them can finish
+                counter.fork(chunks.length);
+                unsubmitted = chunks.length;
+                for (var chunk : chunks) {
+                    executor.submit(new FilterCallable(inputImg, chunk, sharedImg, imgDivision, executor, filter,
+                            counter, threshold, amount, execution));
+                    unsubmitted--;
+                }
             }
-
-            for (var result : results) {
-                result.get();
+        } catch (Throwable e) {
+            // the children that could not be submitted are done without running
+            for (int i = 0; i < unsubmitted; i++) {
+                counter.taskDone();
             }
+            counter.taskFailed(e);
+            return null;
         }
+
+        counter.taskDone();
         return null;
     }
+
+    private boolean canSplit(int xLength, int yLength) {
+        return switch (imgDivision) {
+            case VERTICAL -> xLength >= 2;
+            case HORIZONTAL -> yLength >= 2;
+            case RECTANGULAR, TILED -> xLength >= 2 && yLength >= 2;
+        };
+    }
 }
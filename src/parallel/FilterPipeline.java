@@ -0,0 +1,121 @@
+package parallel;
+
+import filters.Filter;
+import filters.FilterFactory;
+import filters.FusedFilter;
+import models.ConcurrentImage;
+import models.FilterStage;
+import models.FiltersEnum;
+import models.PartitionPolicy;
+import models.PixelBuffer;
+import utils.PixelBufferPool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies an ordered chain of filters with any execution engine.
+ * Consecutive stages that can be fused run as a single {@link FusedFilter} pass, so the only full-size
+ * intermediate images are the ones before and after a swirl stage.
+ */
+public class FilterPipeline {
+
+    private record Segment(Filter filter, int amount) {
+    }
+
+    private final List<FilterStage> stages;
+    private final List<Segment> segments = new ArrayList<>();
+
+    public FilterPipeline(List<FilterStage> stages) {
+        if (stages.isEmpty()) {
+            throw new IllegalArgumentException("A pipeline needs at least one stage");
+        }
+        this.stages = List.copyOf(stages);
+
+        List<FilterStage> fused = new ArrayList<>();
+        for (var stage : this.stages) {
+            if (FusedFilter.isFusable(stage.filter())) {
+                fused.add(stage);
+            } else {
+                if (!fused.isEmpty()) {
+                    segments.add(new Segment(new FusedFilter(fused), 0));
+                    fused.clear();
+                }
+                segments.add(new Segment(FilterFactory.of(stage.filter()), stage.amount()));
+            }
+        }
+        if (!fused.isEmpty()) {
+            segments.add(new Segment(new FusedFilter(fused), 0));
+        }
+    }
+
+    /**
+     * Creates a pipeline where every filter is applied with its default amount.
+     */
+    public static FilterPipeline of(List<FiltersEnum> filters) {
+        List<FilterStage> stages = new ArrayList<>();
+        for (var filter : filters) {
+            stages.add(FilterStage.of(filter));
+        }
+        return new FilterPipeline(stages);
+    }
+
+    /**
+     * Applies every stage to a copy of the image.
+     *
+     * @param engine the engine that runs each pass.
+     * @param image  the input image, it is not modified.
+     * @param policy how each pass splits the image.
+     * @return the filtered image.
+     */
+    public PixelBuffer apply(ExecutionEngine engine, PixelBuffer image, PartitionPolicy policy) {
+        PixelBuffer current = image;
+        for (var segment : segments) {
+            current = engine.apply(segment.filter(), segment.amount(), current, policy);
+        }
+        return current;
+    }
+
+    /**
+     * Applies every stage with output images taken from a pool, the intermediate ones are given back as soon as the
+     * next pass is done, so a run holds at most two images of the pool.
+     *
+     * @param engine the engine that runs each pass.
+     * @param image  the input image, it is not modified.
+     * @param policy how each pass splits the image.
+     * @param pool   the pool the output images are taken from.
+     * @return the filtered image, to be released to the pool once it is not used anymore.
+     */
+    public PixelBuffer apply(ExecutionEngine engine, PixelBuffer image, PartitionPolicy policy, PixelBufferPool pool) {
+        PixelBuffer current = image;
+        for (var segment : segments) {
+            PixelBuffer outputImg = null;
+            try {
+                outputImg = pool.acquireFor(segment.filter(), segment.amount(), current);
+                engine.execute(segment.filter(), segment.amount(), current, new ConcurrentImage(outputImg), policy);
+            } catch (RuntimeException e) {
+                if (outputImg != null) {
+                    pool.release(outputImg);
+                }
+                throw e;
+            } finally {
+                if (current != image) {
+                    pool.release(current);
+                }
+            }
+            current = outputImg;
+        }
+        return current;
+    }
+
+    public List<FilterStage> stages() {
+        return stages;
+    }
+
+    /**
+     * Gets the number of passes over the whole image.
+     */
+    public int passes() {
+        return segments.size();
+    }
+}
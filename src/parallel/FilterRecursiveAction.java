@@ -4,23 +4,35 @@ import filters.Filter;
 import models.ChunkBoundaries;
 import models.ConcurrentImage;
 import models.ImageDivisionEnum;
+import models.PixelBuffer;
+import utils.EngineMetrics;
 
-import java.awt.*;
 import java.util.concurrent.RecursiveAction;
 
 import static utils.DataDecompositionUtils.getChunksOf;
 
+/**
+ * Splits a chunk until it is under the threshold, forking all the sub-chunks of a split together so that idle
+ * workers can steal them.
+ * A chunk over the threshold is also processed directly when the current worker already has more than
+ * {@value #SURPLUS_QUEUED_TASKS} queued tasks that nobody stole, since splitting it further would only add
+ * overhead. A chunk is never split below one row or column per sub-chunk.
+ */
 public class FilterRecursiveAction extends RecursiveAction {
-    private final Color[][] image;
+    private static final int SURPLUS_QUEUED_TASKS = 3;
+
+    private final PixelBuffer image;
     private final ChunkBoundaries chunkBoundaries;
     private final ConcurrentImage outputImg;
     private final ImageDivisionEnum divisionMethod;
     private final Filter filter;
     private final int threshold;
     private final int amount;
+    private final EngineMetrics.Execution execution;
 
-    public FilterRecursiveAction(Color[][] image, ChunkBoundaries chunkBoundaries, ConcurrentImage outputImg,
-                                 ImageDivisionEnum divisionMethod, Filter filter, int threshold, int amount) {
+    public FilterRecursiveAction(PixelBuffer image, ChunkBoundaries chunkBoundaries, ConcurrentImage outputImg,
+                                 ImageDivisionEnum divisionMethod, Filter filter, int threshold, int amount,
+                                 EngineMetrics.Execution execution) {
         this.image = image;
         this.chunkBoundaries = chunkBoundaries;
         this.outputImg = outputImg;
@@ -28,6 +40,7 @@ public class FilterRecursiveAction extends RecursiveAction {
         this.filter = filter;
         this.threshold = threshold;
         this.amount = amount;
+        this.execution = execution;
     }
 
     @Override
@@ -36,20 +49,34 @@ public class FilterRecursiveAction extends RecursiveAction {
         int yLength = chunkBoundaries.upperBoundM() - chunkBoundaries.lowerBoundM() + 1;
         int pixels = xLength * yLength;
 
-        if (pixels <= threshold) {
+        if (pixels <= threshold || !canSplit(xLength, yLength) || getSurplusQueuedTaskCount() > SURPLUS_QUEUED_TASKS) {
+            execution.recordQueueDepth(getQueuedTaskCount());
+            long start = System.nanoTime();
             filter.applyFilter(image, chunkBoundaries, outputImg, amount);
+            execution.recordTask(pixels, System.nanoTime() - start);
         } else {
             ChunkBoundaries[] chunks;
-            if (divisionMethod == ImageDivisionEnum.RECTANGULAR) {
+            if (divisionMethod == ImageDivisionEnum.RECTANGULAR || divisionMethod == ImageDivisionEnum.TILED) {
                 chunks = getChunksOf(chunkBoundaries, 4, divisionMethod);
             } else {
                 chunks = getChunksOf(chunkBoundaries, 2, divisionMethod);
             }
 
-            for (var chunk : chunks) {
-                FilterRecursiveAction filterTask = new FilterRecursiveAction(image, chunk, outputImg, divisionMethod, filter, threshold, amount);
-                invokeAll(filterTask);
+            FilterRecursiveAction[] filterTasks = new FilterRecursiveAction[chunks.length];
+            for (int i = 0; i < chunks.length; i++) {
+                filterTasks[i] = new FilterRecursiveAction(image, chunks[i], outputImg, divisionMethod, filter, threshold, amount,
+                        execution);
             }
+            // forks every sub-chunk but the first, computes the first and then joins the others
+            invokeAll(filterTasks);
         }
     }
+
+    private boolean canSplit(int xLength, int yLength) {
+        return switch (divisionMethod) {
+            case VERTICAL -> xLength >= 2;
+            case HORIZONTAL -> yLength >= 2;
+            case RECTANGULAR, TILED -> xLength >= 2 && yLength >= 2;
+        };
+    }
 }
\ No newline at end of file
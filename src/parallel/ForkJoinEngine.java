@@ -0,0 +1,63 @@
+package parallel;
+
+import filters.Filter;
+import models.ChunkBoundaries;
+import models.ConcurrentImage;
+import models.PartitionPolicy;
+import models.PixelBuffer;
+import utils.EngineMetrics;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Splits the image recursively with {@link FilterRecursiveAction} tasks on a fork-join pool.
+ */
+public class ForkJoinEngine implements ExecutionEngine {
+
+    private final ForkJoinPool forkJoinPool;
+    private final EngineMetrics metrics = new EngineMetrics();
+
+    public ForkJoinEngine(int parallelism) {
+        this.forkJoinPool = new ForkJoinPool(parallelism);
+    }
+
+    @Override
+    public void execute(Filter filter, int amount, PixelBuffer inputImg, ConcurrentImage outputImg, PartitionPolicy policy) {
+        ChunkBoundaries imageAsChunk = new ChunkBoundaries(0, inputImg.width() - 1, 0, inputImg.height() - 1);
+        int threshold = thresholdOf(filter, amount, inputImg, policy);
+
+        EngineMetrics.Execution execution = metrics.begin();
+        long steals = forkJoinPool.getStealCount();
+        long start = System.nanoTime();
+        forkJoinPool.invoke(new FilterRecursiveAction(inputImg, imageAsChunk, outputImg, policy.division(), filter,
+                threshold, amount, execution));
+        // the steal count of the pool is only updated when a worker goes idle, it can lag behind
+        execution.end(forkJoinPool.getParallelism(), forkJoinPool.getStealCount() - steals);
+        ThresholdEstimator.record(filter, amount, (long) inputImg.width() * inputImg.height(), System.nanoTime() - start,
+                forkJoinPool.getParallelism());
+    }
+
+    /**
+     * Gets the threshold of the policy, or computes it if the policy is adaptive.
+     */
+    public int thresholdOf(Filter filter, int amount, PixelBuffer inputImg, PartitionPolicy policy) {
+        if (!policy.isAdaptive()) {
+            return policy.threshold();
+        }
+        return ThresholdEstimator.threshold(filter, amount, inputImg, forkJoinPool.getParallelism());
+    }
+
+    public int getParallelism() {
+        return forkJoinPool.getParallelism();
+    }
+
+    @Override
+    public EngineMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public void close() {
+        forkJoinPool.shutdown();
+    }
+}
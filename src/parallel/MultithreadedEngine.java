@@ -0,0 +1,70 @@
+package parallel;
+
+import filters.Filter;
+import models.ChunkBoundaries;
+import models.ConcurrentImage;
+import models.PartitionPolicy;
+import models.PixelBuffer;
+import utils.EngineMetrics;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Starts one thread per chunk and waits for all of them. The first exception thrown by a thread is rethrown once
+ * all of them are done, so that a partly filtered image is never returned.
+ */
+public class MultithreadedEngine implements ExecutionEngine {
+
+    private final EngineMetrics metrics = new EngineMetrics();
+    private volatile ChunkImbalance lastImbalance;
+
+    @Override
+    public EngineMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public ChunkImbalance lastImbalance() {
+        return lastImbalance;
+    }
+
+    @Override
+    public void execute(Filter filter, int amount, PixelBuffer inputImg, ConcurrentImage outputImg, PartitionPolicy policy) {
+        ChunkBoundaries[] chunks = Partitioner.chunksOf(filter, amount, inputImg, policy.numOfChunks(), policy.division());
+        Thread[] threads = new Thread[chunks.length];
+        long[] chunkNanos = new long[chunks.length];
+        AtomicReference<Throwable> firstError = new AtomicReference<>();
+        EngineMetrics.Execution execution = metrics.begin();
+
+        for (int i = 0; i < threads.length; i++) {
+            var chunk = chunks[i];
+            int index = i;
+            threads[i] = new Thread(() -> {
+                long start = System.nanoTime();
+                filter.applyFilter(inputImg, chunk, outputImg, amount);
+                chunkNanos[index] = System.nanoTime() - start;
+                execution.recordTask(chunk.pixels(), chunkNanos[index]);
+            });
+            threads[i].setUncaughtExceptionHandler((thread, e) -> {
+                if (!firstError.compareAndSet(null, e) && firstError.get() != e) {
+                    firstError.get().addSuppressed(e);
+                }
+            });
+            threads[i].start();
+        }
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the filter threads", e);
+        }
+        execution.end(threads.length, 0);
+        if (firstError.get() != null) {
+            throw new RuntimeException("Error while applying the filter", firstError.get());
+        }
+        lastImbalance = ChunkImbalance.of(chunkNanos);
+    }
+}
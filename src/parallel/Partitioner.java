@@ -0,0 +1,120 @@
+package parallel;
+
+import filters.ConditionalMask;
+import filters.Filter;
+import filters.FilterFactory;
+import models.ChunkBoundaries;
+import models.FiltersEnum;
+import models.ImageDivisionEnum;
+import models.PixelBuffer;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static utils.DataDecompositionUtils.getChunksOf;
+
+/**
+ * Splits an image in the chunks of the engines that run a fixed number of tasks, so that the chunks cost about the
+ * same and the slowest one does not set the runtime.
+ * <p>
+ * Chunks of the same area cost the same for most filters. The filters with a {@link CostModel} are split like
+ * the division asks, with the cuts placed at equal estimated cost instead of equal length, and the tiled division
+ * keeps its tiles, aligned for the cache. The conditional blur only works on the tiles with a pixel whose red
+ * value is above 100, so for that filter the chunks with nothing to blur are also dropped.
+ */
+class Partitioner {
+
+    private static final Filter CONDITIONAL_BLUR = FilterFactory.of(FiltersEnum.CONDITIONAL_BLUR);
+
+    private Partitioner() {
+    }
+
+    /**
+     * Gets the chunks of an image.
+     *
+     * @param filter      the filter that is applied to the chunks.
+     * @param amount      the amount passed to the filter.
+     * @param inputImg    the image to split.
+     * @param numOfChunks the number of chunks, at most that many are returned for the conditional blur.
+     * @param division    the division method.
+     */
+    static ChunkBoundaries[] chunksOf(Filter filter, int amount, PixelBuffer inputImg, int numOfChunks,
+                                      ImageDivisionEnum division) {
+        ChunkBoundaries imageAsChunk = new ChunkBoundaries(0, inputImg.width() - 1, 0, inputImg.height() - 1);
+        if (filter == CONDITIONAL_BLUR) {
+            ConditionalMask mask = ConditionalMask.of(inputImg);
+            ChunkBoundaries[] chunks = split(CostModel.of(mask), imageAsChunk, numOfChunks, division);
+            // the chunks with nothing to blur have nothing to do
+            return Arrays.stream(chunks)
+                    .filter(chunk -> mask.countIn(chunk) > 0)
+                    .toArray(ChunkBoundaries[]::new);
+        }
+        return split(CostModel.of(filter, amount, inputImg), imageAsChunk, numOfChunks, division);
+    }
+
+    private static ChunkBoundaries[] split(CostModel model, ChunkBoundaries imageAsChunk, int numOfChunks,
+                                           ImageDivisionEnum division) {
+        if (model == null || numOfChunks <= 0 || division == ImageDivisionEnum.TILED) {
+            return getChunksOf(imageAsChunk, numOfChunks, division);
+        }
+
+        int columns = 1;
+        int rows = numOfChunks;
+        if (division == ImageDivisionEnum.VERTICAL) {
+            columns = numOfChunks;
+            rows = 1;
+        } else if (division == ImageDivisionEnum.RECTANGULAR) {
+            // the same grid as the area split
+            for (int i = 2; i <= Math.sqrt(numOfChunks); i++) {
+                if (numOfChunks % i == 0) {
+                    columns = i;
+                    rows = numOfChunks / i;
+                }
+            }
+        }
+        if (rows > model.width() || columns > model.height()) {
+            return getChunksOf(imageAsChunk, numOfChunks, division);
+        }
+        return costSplit(model, imageAsChunk, rows, columns);
+    }
+
+    /**
+     * Splits an area in parts along M, then every part in parts along N, all of about the same estimated cost.
+     */
+    private static ChunkBoundaries[] costSplit(CostModel model, ChunkBoundaries area, int partsM, int partsN) {
+        ChunkBoundaries[] result = new ChunkBoundaries[partsM * partsN];
+        int[] firstsM = CostModel.cuts(model.columnCosts(area), area.lowerBoundM(), area.upperBoundM(),
+                model.width(), partsM);
+        for (int i = 0; i < partsM; i++) {
+            int upperM = i < partsM - 1 ? firstsM[i + 1] - 1 : area.upperBoundM();
+            ChunkBoundaries part = new ChunkBoundaries(firstsM[i], upperM, area.lowerBoundN(), area.upperBoundN());
+            int[] firstsN = CostModel.cuts(model.rowCosts(part), area.lowerBoundN(), area.upperBoundN(),
+                    model.height(), partsN);
+            for (int j = 0; j < partsN; j++) {
+                int upperN = j < partsN - 1 ? firstsN[j + 1] - 1 : area.upperBoundN();
+                result[i * partsN + j] = new ChunkBoundaries(firstsM[i], upperM, firstsN[j], upperN);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets one chunk per row of an image, or per band of 2r+1 rows for a filter that reads r rows around its chunk,
+     * so that a chunk filters more rows than it reads around them. The chunks with nothing to blur are dropped for
+     * the conditional blur.
+     *
+     * @param filter   the filter that is applied to the chunks.
+     * @param amount   the amount passed to the filter.
+     * @param inputImg the image to split.
+     */
+    static ChunkBoundaries[] rowsOf(Filter filter, int amount, PixelBuffer inputImg) {
+        ConditionalMask mask = filter == CONDITIONAL_BLUR ? ConditionalMask.of(inputImg) : null;
+        int bandHeight = 2 * filter.halo(amount) + 1;
+        int height = inputImg.height();
+        return IntStream.range(0, (height + bandHeight - 1) / bandHeight)
+                .mapToObj(band -> new ChunkBoundaries(0, inputImg.width() - 1, band * bandHeight,
+                        Math.min(height, (band + 1) * bandHeight) - 1))
+                .filter(chunk -> mask == null || mask.countIn(chunk) > 0)
+                .toArray(ChunkBoundaries[]::new);
+    }
+}
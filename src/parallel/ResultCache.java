@@ -0,0 +1,263 @@
+package parallel;
+
+import filters.GlassFilter;
+import models.FilterStage;
+import models.FiltersEnum;
+import models.PartitionPolicy;
+import models.PixelBuffer;
+import utils.ImageUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Encoded outputs of filter chains, so that filtering the same image with the same filters again (thumbnails,
+ * retries) answers the bytes encoded the first time instead of decoding, filtering and encoding it again.
+ * <p>
+ * The outputs are keyed by the SHA-256 of the encoded input, the filters with their amounts, the seed of the glass
+ * filter and the output format. They are kept in two tiers: an LRU in memory bounded by the size of the outputs,
+ * and a directory of files named after the hash of their key, bounded by their total size as well, the least
+ * recently used file being deleted first. An output found on disk is moved up to memory. The disk tier is only
+ * an optimisation: an output that cannot be read from it or written to it is a miss, not an error.
+ */
+public class ResultCache {
+
+    /**
+     * What an output is computed from.
+     */
+    public record Key(String inputHash, List<FilterStage> stages, long glassSeed, String format) {
+
+        /**
+         * Gets the name of the output on disk, a hash of the whole key.
+         */
+        private String fileName() {
+            return sha256((inputHash + "|" + stages + "|" + glassSeed + "|" + format).getBytes(StandardCharsets.UTF_8))
+                    + "." + format;
+        }
+    }
+
+    private final long maxMemoryBytes;
+    private final Path directory;
+    private final long maxDiskBytes;
+
+    // access ordered, so the first entry is the least recently used
+    private final Map<Key, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes = 0;
+    private long diskBytes;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxMemoryBytes the size of the outputs kept in memory.
+     * @param directory      the directory of the outputs kept on disk, the ones already in it are reused.
+     * @param maxDiskBytes   the size of the outputs kept on disk.
+     * @throws IOException if the directory cannot be created or read.
+     */
+    public ResultCache(long maxMemoryBytes, Path directory, long maxDiskBytes) throws IOException {
+        if (maxMemoryBytes < 0 || maxDiskBytes < 0) {
+            throw new IllegalArgumentException("Invalid cache size");
+        }
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            this.diskBytes = files.mapToLong(ResultCache::sizeOf).sum();
+        }
+    }
+
+    /**
+     * Gets the key of a chain of filters applied to an encoded image.
+     *
+     * @param encodedInput the bytes of the input image.
+     * @param stages       the filters with their amounts.
+     * @param format       the informal name of the output format, e.g. "jpg".
+     */
+    public static Key keyOf(byte[] encodedInput, List<FilterStage> stages, String format) {
+        boolean hasGlass = stages.stream().anyMatch(stage -> stage.filter() == FiltersEnum.GLASS);
+        // the pipelines always draw the glass neighbours with the default seed
+        return new Key(sha256(encodedInput), List.copyOf(stages), hasGlass ? GlassFilter.DEFAULT_SEED : 0, format);
+    }
+
+    /**
+     * Gets a cached output, from memory or else from disk.
+     *
+     * @return the encoded output, or null when it is not cached.
+     */
+    public byte[] get(Key key) {
+        synchronized (this) {
+            byte[] encoded = memory.get(key);
+            if (encoded != null) {
+                memoryHits.increment();
+                return encoded;
+            }
+        }
+
+        Path file = directory.resolve(key.fileName());
+        try {
+            byte[] encoded = Files.readAllBytes(file);
+            // the modification time orders the files from the least recently used
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            diskHits.increment();
+            putInMemory(key, encoded);
+            return encoded;
+        } catch (NoSuchFileException e) {
+            misses.increment();
+            return null;
+        } catch (IOException e) {
+            System.err.println("Could not read the cached output " + file + ", error : " + e);
+            misses.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Caches an output in memory and on disk, or only in memory when it cannot be written to disk.
+     */
+    public void put(Key key, byte[] encoded) {
+        putInMemory(key, encoded);
+        if (encoded.length > maxDiskBytes) {
+            return;
+        }
+
+        Path file = directory.resolve(key.fileName());
+        Path temporary = directory.resolve(key.fileName() + "." + Thread.currentThread().getName() + ".tmp");
+        try {
+            Files.write(temporary, encoded);
+            long replaced = sizeOf(file);
+            // the outputs of a key are all the same, the last one written wins
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (this) {
+                diskBytes += encoded.length - replaced;
+            }
+            evictFromDisk();
+        } catch (IOException e) {
+            System.err.println("Could not write the cached output " + file + ", error : " + e);
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // the directory is not writable, there is nothing to clean up
+            }
+        }
+    }
+
+    /**
+     * Applies a chain of filters to an encoded image, or gets its output from the cache.
+     *
+     * @param engine       the engine that runs each pass on a miss.
+     * @param encodedInput the bytes of the input image.
+     * @param pipeline     the chain of filters.
+     * @param policy       how each pass splits the image.
+     * @param format       the informal name of the output format, e.g. "jpg".
+     * @return the encoded output.
+     * @throws IOException if the input cannot be decoded or the output encoded.
+     */
+    public byte[] apply(ExecutionEngine engine, byte[] encodedInput, FilterPipeline pipeline, PartitionPolicy policy,
+                        String format) throws IOException {
+        Key key = keyOf(encodedInput, pipeline.stages(), format);
+        byte[] encoded = get(key);
+        if (encoded == null) {
+            PixelBuffer outputImg = pipeline.apply(engine, ImageUtils.decodePixels(encodedInput), policy);
+            encoded = ImageUtils.encode(outputImg, format);
+            put(key, encoded);
+        }
+        return encoded;
+    }
+
+    public long memoryHits() {
+        return memoryHits.sum();
+    }
+
+    public long diskHits() {
+        return diskHits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    private synchronized void putInMemory(Key key, byte[] encoded) {
+        if (encoded.length > maxMemoryBytes) {
+            return;
+        }
+        byte[] replaced = memory.put(key, encoded);
+        memoryBytes += encoded.length - (replaced == null ? 0 : replaced.length);
+
+        var entries = memory.values().iterator();
+        while (memoryBytes > maxMemoryBytes) {
+            memoryBytes -= entries.next().length;
+            entries.remove();
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until the ones left fit in {@code maxDiskBytes}.
+     */
+    private void evictFromDisk() throws IOException {
+        synchronized (this) {
+            if (diskBytes <= maxDiskBytes) {
+                return;
+            }
+        }
+        List<Path> files;
+        try (Stream<Path> listed = Files.list(directory)) {
+            files = listed.filter(file -> !file.getFileName().toString().endsWith(".tmp"))
+                    .sorted(Comparator.comparingLong(ResultCache::lastModifiedOf))
+                    .toList();
+        }
+        for (Path file : files) {
+            synchronized (this) {
+                if (diskBytes <= maxDiskBytes) {
+                    return;
+                }
+            }
+            long size = sizeOf(file);
+            if (Files.deleteIfExists(file)) {
+                synchronized (this) {
+                    diskBytes -= size;
+                }
+            }
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long lastModifiedOf(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+}
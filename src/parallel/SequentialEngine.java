@@ -0,0 +1,31 @@
+package parallel;
+
+import filters.Filter;
+import models.ChunkBoundaries;
+import models.ConcurrentImage;
+import models.PartitionPolicy;
+import models.PixelBuffer;
+import utils.EngineMetrics;
+
+/**
+ * Applies the filter to the whole image on the calling thread, the partition policy is ignored.
+ */
+public class SequentialEngine implements ExecutionEngine {
+
+    private final EngineMetrics metrics = new EngineMetrics();
+
+    @Override
+    public void execute(Filter filter, int amount, PixelBuffer inputImg, ConcurrentImage outputImg, PartitionPolicy policy) {
+        ChunkBoundaries imageAsChunk = new ChunkBoundaries(0, inputImg.width() - 1, 0, inputImg.height() - 1);
+        EngineMetrics.Execution execution = metrics.begin();
+        long start = System.nanoTime();
+        filter.applyFilter(inputImg, imageAsChunk, outputImg, amount);
+        execution.recordTask(imageAsChunk.pixels(), System.nanoTime() - start);
+        execution.end(1, 0);
+    }
+
+    @Override
+    public EngineMetrics metrics() {
+        return metrics;
+    }
+}
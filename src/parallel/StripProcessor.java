@@ -0,0 +1,88 @@
+package parallel;
+
+import filters.Filter;
+import filters.FilterFactory;
+import filters.FusedFilter;
+import filters.GlassFilter;
+import models.FilterStage;
+import models.FiltersEnum;
+import models.PartitionPolicy;
+import models.PixelBuffer;
+import utils.MappedPixelFile;
+
+import java.util.List;
+
+/**
+ * Applies filters to a {@link MappedPixelFile} one strip of rows at a time, so the heap only holds a strip of the
+ * input and a strip of the output whatever the size of the image.
+ * <p>
+ * Every strip is read with a halo of rows above and below, as tall as the neighbourhood of the stages, and is
+ * filtered with an execution engine like a small image. Only the rows that are at least a halo away from the
+ * strip edges, or on the edge of the image, are written back, so the result matches filtering the whole image.
+ * Several stages are fused into one pass. The swirl filter moves pixels across the whole image and cannot be
+ * applied in strips.
+ */
+public class StripProcessor {
+
+    private final int stripHeight;
+
+    public StripProcessor(int stripHeight) {
+        if (stripHeight <= 0) {
+            throw new IllegalArgumentException("Invalid strip height");
+        }
+        this.stripHeight = stripHeight;
+    }
+
+    /**
+     * Filters the input file into the output file.
+     *
+     * @param engine the engine that filters each strip.
+     * @param stages the filters to apply, in order.
+     * @param input  the image to read from.
+     * @param output the image to write to, of the same size.
+     * @param policy how each strip is split by the engine.
+     */
+    public void apply(ExecutionEngine engine, List<FilterStage> stages, MappedPixelFile input, MappedPixelFile output,
+                      PartitionPolicy policy) {
+        if (input.width() != output.width() || input.height() != output.height()) {
+            throw new IllegalArgumentException("The input and output images do not have the same size");
+        }
+
+        int halo = 0;
+        for (var stage : stages) {
+            if (!FusedFilter.isFusable(stage.filter())) {
+                throw new IllegalArgumentException("The " + stage.filter() + " filter cannot be applied in strips");
+            }
+            halo += FusedFilter.haloOf(stage);
+        }
+        int amount = stages.size() == 1 ? stages.get(0).amount() : 0;
+
+        for (int firstRow = 0; firstRow < input.height(); firstRow += stripHeight) {
+            int rows = Math.min(stripHeight, input.height() - firstRow);
+            int top = Math.max(0, firstRow - halo);
+            int bottom = Math.min(input.height() - 1, firstRow + rows - 1 + halo);
+
+            PixelBuffer strip = input.readRows(top, bottom - top + 1);
+            PixelBuffer filtered = engine.apply(filterOf(stages, top), amount, strip, policy);
+            output.writeRows(firstRow, filtered, firstRow - top, rows);
+        }
+    }
+
+    /**
+     * Gets the filter of a strip that starts at a row of the image, the glass filter hashes the pixels with their
+     * coordinates in the whole image.
+     */
+    private static Filter filterOf(List<FilterStage> stages, int top) {
+        if (stages.size() > 1) {
+            return new FusedFilter(stages, 0, top);
+        }
+        if (stages.get(0).filter() == FiltersEnum.GLASS) {
+            return GlassFilter.seeded(GlassFilter.DEFAULT_SEED, 0, top);
+        }
+        return FilterFactory.of(stages.get(0).filter());
+    }
+
+    public int getStripHeight() {
+        return stripHeight;
+    }
+}
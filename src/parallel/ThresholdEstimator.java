@@ -0,0 +1,106 @@
+package parallel;
+
+import filters.Filter;
+import models.ChunkBoundaries;
+import models.ConcurrentImage;
+import models.PixelBuffer;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Computes the split threshold of the recursive engines from the image size, the parallelism and the cost
+ * per pixel of the filter, so that any image gets a sensible granularity without a per-image table.
+ * <p>
+ * The threshold is the largest of two limits: enough leaf tasks for every thread to get a few of them
+ * (so that threads finishing early can take more work), and enough pixels per leaf task for its work to
+ * outweigh the cost of creating and scheduling it. The cost per pixel of each filter and amount is measured
+ * on a small sample image the first time it is needed, then refined with the time of every execution.
+ */
+public class ThresholdEstimator {
+
+    private static final int TASKS_PER_THREAD = 4;
+    private static final long MIN_TASK_NANOS = 100_000;
+    private static final int CALIBRATION_SIZE = 256;
+    private static final int CALIBRATION_RUNS = 3;
+    private static final double LEARNING_RATE = 0.2;
+
+    private record Key(Object filter, int amount) {
+    }
+
+    private static final Map<Key, Double> NANOS_PER_PIXEL = new ConcurrentHashMap<>();
+
+    private ThresholdEstimator() {
+    }
+
+    /**
+     * Computes the threshold in pixels under which a chunk is no longer split.
+     *
+     * @param filter      the filter to apply.
+     * @param amount      the amount passed to the filter.
+     * @param image       the image to process.
+     * @param parallelism the number of threads that process the image.
+     * @return the threshold, between 1 and the number of pixels of the image.
+     */
+    public static int threshold(Filter filter, int amount, PixelBuffer image, int parallelism) {
+        long pixels = (long) image.width() * image.height();
+        long byBalance = (pixels + (long) parallelism * TASKS_PER_THREAD - 1) / ((long) parallelism * TASKS_PER_THREAD);
+        long byCost = (long) Math.ceil(MIN_TASK_NANOS / nanosPerPixel(filter, amount));
+        return (int) Math.max(1, Math.min(pixels, Math.max(byBalance, byCost)));
+    }
+
+    /**
+     * Gets the estimated cost per pixel of a filter, calibrating it on a sample image if it is not known yet.
+     *
+     * @return the cost in nanoseconds per pixel.
+     */
+    public static double nanosPerPixel(Filter filter, int amount) {
+        Key key = new Key(filter.costKey(), amount);
+        Double known = NANOS_PER_PIXEL.get(key);
+        if (known != null) {
+            return known;
+        }
+        // calibrated outside the map, which would lock the other keys of its bin meanwhile. When two threads
+        // calibrate the same filter, the first one to finish wins
+        Double calibrated = calibrate(filter, amount);
+        Double previous = NANOS_PER_PIXEL.putIfAbsent(key, calibrated);
+        return previous != null ? previous : calibrated;
+    }
+
+    /**
+     * Refines the cost per pixel of a filter with the time an execution took.
+     *
+     * @param pixels       the pixels processed.
+     * @param elapsedNanos the wall time of the execution.
+     * @param parallelism  the number of threads that processed the image.
+     */
+    public static void record(Filter filter, int amount, long pixels, long elapsedNanos, int parallelism) {
+        if (pixels <= 0 || elapsedNanos <= 0) {
+            return;
+        }
+        int busyThreads = Math.max(1, Math.min(parallelism, Runtime.getRuntime().availableProcessors()));
+        double observed = (double) elapsedNanos * busyThreads / pixels;
+        NANOS_PER_PIXEL.merge(new Key(filter.costKey(), amount), observed,
+                (previous, current) -> previous * (1 - LEARNING_RATE) + current * LEARNING_RATE);
+    }
+
+    private static double calibrate(Filter filter, int amount) {
+        Random random = new Random(CALIBRATION_SIZE);
+        int[] pixels = new int[CALIBRATION_SIZE * CALIBRATION_SIZE];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt(1 << 24);
+        }
+        PixelBuffer sample = new PixelBuffer(CALIBRATION_SIZE, CALIBRATION_SIZE, pixels);
+        ChunkBoundaries sampleAsChunk = new ChunkBoundaries(0, CALIBRATION_SIZE - 1, 0, CALIBRATION_SIZE - 1);
+        ConcurrentImage outputImg = new ConcurrentImage(sample.copy());
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_RUNS; i++) {
+            long start = System.nanoTime();
+            filter.applyFilter(sample, sampleAsChunk, outputImg, amount);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return Math.max(best, 1) / (double) pixels.length;
+    }
+}
@@ -0,0 +1,126 @@
+package parallel;
+
+import filters.Filter;
+import models.ChunkBoundaries;
+import models.ConcurrentImage;
+import models.ImageDivisionEnum;
+import models.PartitionPolicy;
+import models.PixelBuffer;
+import utils.EngineMetrics;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs one task per chunk, or one task per row when the policy has no number of chunks (one per tile with the tiled
+ * division), each on its own virtual thread. For the filters that read the rows around their chunk, a task gets a
+ * band of 2r+1 rows instead of a single one, r being how far the filter reads.
+ * The tasks are scoped to the execution: it returns once every task is finished, or as soon as one fails, in
+ * which case the others are cancelled (the ones already running finish their chunk) and the error is rethrown.
+ * <p>
+ * Virtual threads are only available from JDK 21, on older runtimes the tasks run on a fixed pool of one platform
+ * thread per processor instead (see {@link #isVirtual()}), since a thread per task would start thousands of them
+ * for the per-row tasks of a large image.
+ */
+public class VirtualThreadEngine implements ExecutionEngine {
+
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final EngineMetrics metrics = new EngineMetrics();
+    private volatile ChunkImbalance lastImbalance;
+
+    public VirtualThreadEngine() {
+        ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+        this.virtual = virtualExecutor != null;
+        this.executor = virtual ? virtualExecutor
+                : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public EngineMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public ChunkImbalance lastImbalance() {
+        return lastImbalance;
+    }
+
+    @Override
+    public void execute(Filter filter, int amount, PixelBuffer inputImg, ConcurrentImage outputImg, PartitionPolicy policy) {
+        ChunkBoundaries[] chunks = chunksOf(filter, amount, inputImg, policy);
+        CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Void>> futures = new ArrayList<>(chunks.length);
+        long[] chunkNanos = new long[chunks.length];
+        EngineMetrics.Execution execution = metrics.begin();
+
+        for (int i = 0; i < chunks.length; i++) {
+            var chunk = chunks[i];
+            int index = i;
+            futures.add(completionService.submit(() -> {
+                long start = System.nanoTime();
+                filter.applyFilter(inputImg, chunk, outputImg, amount);
+                chunkNanos[index] = System.nanoTime() - start;
+                execution.recordTask(chunk.pixels(), chunkNanos[index]);
+                return null;
+            }));
+        }
+
+        try {
+            for (int i = 0; i < chunks.length; i++) {
+                completionService.take().get();
+            }
+        } catch (ExecutionException e) {
+            cancelAll(futures);
+            throw new RuntimeException("Error while applying the filter", e.getCause());
+        } catch (InterruptedException e) {
+            cancelAll(futures);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the filter tasks", e);
+        }
+        // the virtual threads run on one carrier thread per processor, like the fixed pool
+        execution.end(Runtime.getRuntime().availableProcessors(), 0);
+        lastImbalance = ChunkImbalance.of(chunkNanos);
+    }
+
+    /**
+     * Whether the tasks run on virtual threads, false when the runtime does not support them.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static ChunkBoundaries[] chunksOf(Filter filter, int amount, PixelBuffer inputImg, PartitionPolicy policy) {
+        if (policy != null && (policy.numOfChunks() > 0 || policy.division() == ImageDivisionEnum.TILED)) {
+            return Partitioner.chunksOf(filter, amount, inputImg, policy.numOfChunks(), policy.division());
+        }
+        return Partitioner.rowsOf(filter, amount, inputImg);
+    }
+
+    private static void cancelAll(List<Future<Void>> futures) {
+        for (var future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the number of pixels being filtered at a time, so that a burst of requests queues up instead of sharing
+ * the workers between all of them and making every one of them slow.
+ * <p>
+ * The requests are admitted in the order they arrived, a large image is not overtaken by smaller ones. An image
+ * larger than the whole budget is admitted alone. A request that waits longer than its timeout is rejected, the
+ * client can retry later.
+ */
+public class AdmissionControl {
+
+    private final long maxPixels;
+    // the requests waiting to be admitted, in the order they arrived
+    private final Deque<Object> waiting = new ArrayDeque<>();
+    private long inFlightPixels = 0;
+    private long admitted = 0;
+    private long rejected = 0;
+
+    public AdmissionControl(long maxPixels) {
+        if (maxPixels <= 0) {
+            throw new IllegalArgumentException("Invalid number of pixels in flight");
+        }
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * Waits until an image fits in the budget, to be followed by {@link #release} once it is filtered.
+     *
+     * @param pixels        the number of pixels of the image.
+     * @param timeoutMillis how long to wait at most.
+     * @return whether the image was admitted, false when the timeout elapsed or the thread was interrupted.
+     */
+    public synchronized boolean admit(long pixels, long timeoutMillis) {
+        Object ticket = new Object();
+        waiting.addLast(ticket);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            while (waiting.peekFirst() != ticket || (inFlightPixels > 0 && inFlightPixels + pixels > maxPixels)) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    rejected++;
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, left);
+            }
+            inFlightPixels += pixels;
+            admitted++;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected++;
+            return false;
+        } finally {
+            waiting.remove(ticket);
+            // the next request may be the head of the queue now
+            notifyAll();
+        }
+    }
+
+    /**
+     * Gives back the pixels of an admitted image.
+     */
+    public synchronized void release(long pixels) {
+        inFlightPixels -= pixels;
+        notifyAll();
+    }
+
+    public synchronized long inFlightPixels() {
+        return inFlightPixels;
+    }
+
+    public synchronized int waiting() {
+        return waiting.size();
+    }
+
+    public synchronized long admitted() {
+        return admitted;
+    }
+
+    public synchronized long rejected() {
+        return rejected;
+    }
+}
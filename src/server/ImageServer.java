@@ -0,0 +1,308 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import models.FilterStage;
+import models.FiltersEnum;
+import models.PartitionPolicy;
+import models.PixelBuffer;
+import parallel.ExecutionEngine;
+import parallel.FilterPipeline;
+import parallel.ResultCache;
+import utils.EngineMetrics;
+import utils.ImageUtils;
+import utils.PixelBufferPool;
+
+import javax.imageio.ImageIO;
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-running HTTP front end of an execution engine, so that the pools, the JIT-compiled filters and the output
+ * buffers are warm for every request instead of paying a JVM start for every image.
+ * <p>
+ * {@code POST /filter?filters=blur:5,swirl&format=png} with an encoded image as body answers the image filtered by
+ * the chain, each filter with the given amount or its default one, encoded as a .jpg unless an other format is
+ * asked for. {@code GET /metrics} answers what the engine did since the server started, as JSON.
+ * <p>
+ * The requests are decoded and encoded on their own threads, the filters of all of them run on the shared engine.
+ * An {@link AdmissionControl} bounds the pixels being filtered at a time: a request that waits too long for its
+ * turn is answered 503 and can be retried. The outputs can be kept in a {@link ResultCache}, a request whose output
+ * is cached is answered right away, without waiting for its turn.
+ */
+public class ImageServer implements AutoCloseable {
+
+    private static final int WARMUP_SIZE = 256;
+    private static final int WARMUP_RUNS = 10;
+    private static final int MAX_REQUEST_BYTES = 64 * 1024 * 1024;
+    private static final String DEFAULT_FORMAT = "jpg";
+
+    private final ExecutionEngine engine;
+    private final PartitionPolicy policy;
+    private final long admissionTimeoutMillis;
+    private final AdmissionControl admission;
+    private final PixelBufferPool outputBuffers;
+    private final ResultCache cache;
+    private final ExecutorService requestThreads;
+    private final HttpServer server;
+    private EngineMetrics.Snapshot metricsAtStart;
+
+    /**
+     * @param engine                 the engine that runs the filters, shared by all the requests.
+     * @param policy                 how each pass splits the image.
+     * @param port                   the local port to listen on.
+     * @param requestThreads         the number of requests decoded, filtered or encoded at a time.
+     * @param maxInFlightPixels      the number of pixels being filtered at a time.
+     * @param admissionTimeoutMillis how long a request waits for its turn before being rejected.
+     * @param cache                  the cache of the outputs, null to filter every request.
+     * @throws IOException if the port cannot be bound.
+     */
+    public ImageServer(ExecutionEngine engine, PartitionPolicy policy, int port, int requestThreads,
+                       long maxInFlightPixels, long admissionTimeoutMillis, ResultCache cache) throws IOException {
+        if (requestThreads <= 0 || admissionTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Invalid number of request threads or admission timeout");
+        }
+        this.engine = engine;
+        this.policy = policy;
+        this.admissionTimeoutMillis = admissionTimeoutMillis;
+        this.admission = new AdmissionControl(maxInFlightPixels);
+        // the admission bounds the buffers in use, the pool keeps the free ones of a few sizes
+        this.outputBuffers = new PixelBufferPool(Integer.MAX_VALUE, 2 * maxInFlightPixels);
+        this.cache = cache;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.requestThreads = Executors.newFixedThreadPool(requestThreads,
+                runnable -> new Thread(runnable, "image-server-" + threadCount.incrementAndGet()));
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        this.server.setExecutor(this.requestThreads);
+        this.server.createContext("/filter", this::filter);
+        this.server.createContext("/metrics", this::metrics);
+    }
+
+    /**
+     * Warms the engine up and starts answering requests.
+     */
+    public void start() {
+        warmUp();
+        metricsAtStart = engine.metrics().snapshot();
+        server.start();
+    }
+
+    /**
+     * Runs every filter, alone and fused in a chain, on a small random image until the JIT has compiled them, which
+     * also starts the threads of the engine and calibrates its thresholds. The codecs are loaded as well.
+     */
+    public void warmUp() {
+        PixelBuffer image = new PixelBuffer(WARMUP_SIZE, WARMUP_SIZE);
+        Random random = new Random(0);
+        int[] pixels = image.pixels();
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt(0x1000000);
+        }
+
+        List<FilterPipeline> pipelines = new ArrayList<>();
+        for (var filter : FiltersEnum.values()) {
+            pipelines.add(FilterPipeline.of(List.of(filter)));
+        }
+        pipelines.add(FilterPipeline.of(List.of(FiltersEnum.values())));
+        for (int k = 0; k < WARMUP_RUNS; k++) {
+            for (var pipeline : pipelines) {
+                outputBuffers.release(pipeline.apply(engine, image, policy, outputBuffers));
+            }
+        }
+
+        try {
+            ImageUtils.decodePixels(ImageUtils.encode(image, DEFAULT_FORMAT));
+        } catch (IOException e) {
+            throw new RuntimeException("Could not warm the codecs up", e);
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops answering requests, the engine is left to its owner.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        requestThreads.shutdown();
+        try {
+            requestThreads.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void filter(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                filterImage(exchange);
+            } catch (IOException | RuntimeException e) {
+                if (exchange.getResponseCode() != -1) {
+                    // the answer was being sent, the client is gone
+                    throw e;
+                }
+                // an image whose header was readable but not its pixels, or a failing filter
+                send(exchange, e instanceof IOException ? 400 : 500,
+                        "Could not filter the image, error : " + e.getMessage());
+            }
+        }
+    }
+
+    private void filterImage(HttpExchange exchange) throws IOException {
+        // read before answering, the connection is reset if the client is still sending its image
+        byte[] body = exchange.getRequestBody().readNBytes(MAX_REQUEST_BYTES + 1);
+        if (!exchange.getRequestMethod().equals("POST")) {
+            send(exchange, 405, "Use POST with an image as body");
+            return;
+        }
+        Map<String, String> query = queryOf(exchange);
+        FilterPipeline pipeline;
+        try {
+            pipeline = new FilterPipeline(stagesOf(query.getOrDefault("filters", "")));
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, "Invalid filters: " + e.getMessage());
+            return;
+        }
+        String format = query.getOrDefault("format", DEFAULT_FORMAT).toLowerCase(Locale.ROOT);
+        if (!ImageIO.getImageWritersByFormatName(format).hasNext()) {
+            send(exchange, 400, "No writer for " + format);
+            return;
+        }
+
+        if (body.length > MAX_REQUEST_BYTES) {
+            send(exchange, 413, "The image is larger than " + MAX_REQUEST_BYTES + " bytes");
+            return;
+        }
+        String contentType = "image/" + (format.equals("jpg") ? "jpeg" : format);
+        ResultCache.Key key = cache == null ? null : ResultCache.keyOf(body, pipeline.stages(), format);
+        byte[] cached = key == null ? null : cache.get(key);
+        if (cached != null) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.getResponseHeaders().set("X-Cache", "hit");
+            send(exchange, 200, cached);
+            return;
+        }
+        Dimension size;
+        try {
+            size = ImageUtils.sizeOf(body);
+        } catch (IOException e) {
+            send(exchange, 400, e.getMessage());
+            return;
+        }
+
+        // the decoded image and its outputs are only allocated once the request is admitted
+        long pixels = (long) size.width * size.height;
+        long queuedAt = System.nanoTime();
+        if (!admission.admit(pixels, admissionTimeoutMillis)) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            send(exchange, 503, "Too many pixels in flight, retry later");
+            return;
+        }
+        long admittedAt = System.nanoTime();
+        byte[] encoded;
+        long decodedAt;
+        long filteredAt;
+        try {
+            PixelBuffer image = ImageUtils.decodePixels(body);
+            decodedAt = System.nanoTime();
+            PixelBuffer outputImg = pipeline.apply(engine, image, policy, outputBuffers);
+            filteredAt = System.nanoTime();
+            try {
+                encoded = ImageUtils.encode(outputImg, format);
+            } finally {
+                outputBuffers.release(outputImg);
+            }
+        } finally {
+            admission.release(pixels);
+        }
+        if (key != null) {
+            cache.put(key, encoded);
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        if (key != null) {
+            exchange.getResponseHeaders().set("X-Cache", "miss");
+        }
+        exchange.getResponseHeaders().set("Server-Timing", String.format(Locale.ROOT,
+                "queue;dur=%.1f, decode;dur=%.1f, filter;dur=%.1f, encode;dur=%.1f", (admittedAt - queuedAt) / 1e6,
+                (decodedAt - admittedAt) / 1e6, (filteredAt - decodedAt) / 1e6, (System.nanoTime() - filteredAt) / 1e6));
+        send(exchange, 200, encoded);
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            EngineMetrics.Snapshot engineMetrics = engine.metrics().snapshot();
+            if (metricsAtStart != null) {
+                engineMetrics = engineMetrics.since(metricsAtStart);
+            }
+            String json = "{\"In-flight pixels\": " + admission.inFlightPixels()
+                    + ", \"Waiting requests\": " + admission.waiting()
+                    + ", \"Admitted requests\": " + admission.admitted()
+                    + ", \"Rejected requests\": " + admission.rejected()
+                    + (cache == null ? "" : ", \"Memory cache hits\": " + cache.memoryHits()
+                    + ", \"Disk cache hits\": " + cache.diskHits() + ", \"Cache misses\": " + cache.misses())
+                    + ", \"Engine\": " + engineMetrics.toJson() + "}\n";
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            send(exchange, 200, json.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Parses a chain of filters such as {@code blur:5,swirl}, the filters without an amount get their default one.
+     */
+    private static List<FilterStage> stagesOf(String filters) {
+        List<FilterStage> stages = new ArrayList<>();
+        for (String stage : filters.split(",")) {
+            if (stage.isBlank()) {
+                continue;
+            }
+            String[] parts = stage.trim().split(":", 2);
+            FiltersEnum filter = FiltersEnum.valueOf(parts[0].toUpperCase(Locale.ROOT));
+            stages.add(parts.length == 1 ? FilterStage.of(filter) : new FilterStage(filter, Integer.parseInt(parts[1])));
+        }
+        return stages;
+    }
+
+    private static Map<String, String> queryOf(HttpExchange exchange) {
+        Map<String, String> query = new HashMap<>();
+        String rawQuery = exchange.getRequestURI().getRawQuery();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                String[] parts = parameter.split("=", 2);
+                query.put(URLDecoder.decode(parts[0], StandardCharsets.UTF_8),
+                        parts.length == 1 ? "" : URLDecoder.decode(parts[1], StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static void send(HttpExchange exchange, int status, String message) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        send(exchange, status, (message + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+}
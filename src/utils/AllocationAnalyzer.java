@@ -0,0 +1,49 @@
+package utils;
+
+import filters.Filter;
+import models.ChunkBoundaries;
+import models.ConcurrentImage;
+import models.PixelBuffer;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the heap allocated by a filter run with the allocated-bytes counter of the current thread.
+ * A filter that creates an object per pixel (e.g. a Color, at least 24 bytes) shows up as one or more
+ * bytes per pixel, while per-chunk scratch arrays stay well below that.
+ */
+public class AllocationAnalyzer {
+
+    private final com.sun.management.ThreadMXBean threadMXBean;
+
+    public AllocationAnalyzer() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean)
+                || !bean.isThreadAllocatedMemorySupported()) {
+            throw new RuntimeException("Thread allocated memory is not supported by this JVM");
+        }
+        bean.setThreadAllocatedMemoryEnabled(true);
+        this.threadMXBean = bean;
+    }
+
+    /**
+     * Runs the filter over the whole image on the current thread and returns the bytes it allocated per pixel.
+     * The filter is run once before measuring so that class loading and lambda linkage are not counted.
+     *
+     * @param filter the filter to analyze.
+     * @param image  the input image.
+     * @param amount the amount passed to the filter.
+     * @return the allocated bytes per pixel.
+     */
+    public double bytesPerPixel(Filter filter, PixelBuffer image, int amount) {
+        ChunkBoundaries imageAsChunk = new ChunkBoundaries(0, image.width() - 1, 0, image.height() - 1);
+        ConcurrentImage outputImg = new ConcurrentImage(ImageUtils.copyImage(image));
+        filter.applyFilter(image, imageAsChunk, outputImg, amount);
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        filter.applyFilter(image, imageAsChunk, outputImg, amount);
+        long after = threadMXBean.getThreadAllocatedBytes(threadId);
+
+        return (double) (after - before) / ((long) image.width() * image.height());
+    }
+}
@@ -0,0 +1,103 @@
+package utils;
+
+import models.PixelBuffer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Encodes and writes images on its own I/O threads so the next filter job can start while the previous result
+ * is being compressed.
+ * <p>
+ * At most {@code queueCapacity} images wait to be written besides the ones being written. When the queue is full
+ * {@link #write} blocks until an I/O thread takes the next image, which bounds the number of output images kept
+ * alive when the filters are faster than the encoder.
+ */
+public class AsyncImageWriter implements AutoCloseable {
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore slots;
+
+    public AsyncImageWriter(int ioThreads, int queueCapacity) {
+        if (ioThreads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid number of I/O threads or queue capacity");
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(ioThreads, ioThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "image-writer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // a permit per queued write, taken back when an I/O thread starts it, so the queue never has to reject one
+        this.slots = new Semaphore(queueCapacity);
+    }
+
+    /**
+     * Queues an image to be written as a .jpg file, blocking while the queue is full.
+     * The image must not be modified until the returned future completes.
+     *
+     * @param image    the pixel buffer.
+     * @param filename to the image.
+     * @return a future completed with the {@link System#nanoTime()} at which the file was written, or with the
+     * exception that prevented it from being written.
+     */
+    public CompletableFuture<Long> write(PixelBuffer image, String filename) {
+        slots.acquireUninterruptibly();
+        CompletableFuture<Long> written = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                slots.release();
+                // runs that write the same file may be encoded at the same time, the last one to finish wins
+                Path target = Path.of(filename);
+                Path temporary = Path.of(filename + "." + Thread.currentThread().getName() + ".tmp");
+                try {
+                    ImageUtils.writePixels(image, temporary.toString());
+                    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    written.complete(System.nanoTime());
+                } catch (Throwable e) {
+                    try {
+                        Files.deleteIfExists(temporary);
+                    } catch (IOException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                    written.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+        return written;
+    }
+
+    /**
+     * Gets the number of images waiting for an I/O thread.
+     */
+    public int getQueuedWrites() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Waits for the queued images to be written.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                System.out.println("Waiting for " + getQueuedWrites() + " images to be written");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package utils;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Runs an operation a number of warmup times, then times a number of measured runs.
+ * Besides the wall time it reports the garbage collections and the heap allocated during the measured runs.
+ * <p>
+ * The allocation is the sum of the allocated-bytes counters of the threads alive at the start of each run,
+ * threads that are created inside a run (e.g. by the multithreaded engine) are not counted.
+ */
+public class BenchmarkRunner {
+
+    public record Result(double meanMillis, double minMillis, double maxMillis, double stdDevMillis,
+                         long gcCount, long gcTimeMillis, double allocatedMBPerOp) {
+    }
+
+    private final int warmupRuns;
+    private final int measuredRuns;
+    private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+    private final com.sun.management.ThreadMXBean threadMXBean;
+
+    public BenchmarkRunner(int warmupRuns, int measuredRuns) {
+        if (warmupRuns < 0 || measuredRuns <= 0) {
+            throw new IllegalArgumentException("Invalid number of runs");
+        }
+        this.warmupRuns = warmupRuns;
+        this.measuredRuns = measuredRuns;
+
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()) {
+            bean.setThreadAllocatedMemoryEnabled(true);
+            this.threadMXBean = bean;
+        } else {
+            this.threadMXBean = null;
+        }
+    }
+
+    /**
+     * Benchmarks an operation.
+     *
+     * @param setup     runs before every run of the operation and is not timed, e.g. to reset the output image.
+     * @param operation the operation to time.
+     * @return the statistics of the measured runs.
+     */
+    public Result run(Runnable setup, Runnable operation) {
+        for (int i = 0; i < warmupRuns; i++) {
+            setup.run();
+            operation.run();
+        }
+
+        double[] times = new double[measuredRuns];
+        long allocatedBytes = 0;
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+
+        for (int i = 0; i < measuredRuns; i++) {
+            setup.run();
+            long[] threadIds = threadMXBean == null ? new long[0] : threadMXBean.getAllThreadIds();
+            long[] allocatedBefore = allocatedBytes(threadIds);
+            long start = System.nanoTime();
+            operation.run();
+            long end = System.nanoTime();
+            long[] allocatedAfter = allocatedBytes(threadIds);
+            for (int t = 0; t < threadIds.length; t++) {
+                if (allocatedBefore[t] >= 0 && allocatedAfter[t] >= 0) {
+                    allocatedBytes += allocatedAfter[t] - allocatedBefore[t];
+                }
+            }
+            times[i] = (end - start) / 1_000_000.0;
+        }
+
+        long gcCountAfter = gcCount();
+        long gcTimeAfter = gcTime();
+
+        double sum = 0, min = Double.MAX_VALUE, max = 0;
+        for (double time : times) {
+            sum += time;
+            min = Math.min(min, time);
+            max = Math.max(max, time);
+        }
+        double mean = sum / measuredRuns;
+        double squares = 0;
+        for (double time : times) {
+            squares += (time - mean) * (time - mean);
+        }
+
+        return new Result(mean, min, max, Math.sqrt(squares / measuredRuns), gcCountAfter - gcCountBefore,
+                gcTimeAfter - gcTimeBefore, allocatedBytes / (1024.0 * 1024.0) / measuredRuns);
+    }
+
+    private long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : gcBeans) {
+            count += Math.max(bean.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    private long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean bean : gcBeans) {
+            time += Math.max(bean.getCollectionTime(), 0);
+        }
+        return time;
+    }
+
+    private long[] allocatedBytes(long[] threadIds) {
+        // -1 is returned for the threads that are no longer alive
+        return threadMXBean == null ? new long[0] : threadMXBean.getThreadAllocatedBytes(threadIds);
+    }
+}
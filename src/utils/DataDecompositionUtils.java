@@ -3,8 +3,19 @@ package utils;
 import models.ChunkBoundaries;
 import models.ImageDivisionEnum;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
 public class DataDecompositionUtils {
 
+    /**
+     * Side of a square tile in pixels. A tile is read from the input and written to the output, 8 bytes per pixel,
+     * so 128x128 tiles take 128 KiB and, with the blur halo, still fit in a 256 KiB L2 cache.
+     */
+    public static final int TILE_SIZE = 128;
+
     private static ChunkBoundaries[] splitIntoVerticalChunks(ChunkBoundaries boundaries, int numOfChunks) {
         int nLength = boundaries.upperBoundN() - boundaries.lowerBoundN() + 1;
 
@@ -41,8 +52,9 @@ public class DataDecompositionUtils {
 
     private static ChunkBoundaries[] splitIntoRectangularChunks(ChunkBoundaries boundaries, int numOfChunks) {
         ChunkBoundaries[] result = new ChunkBoundaries[numOfChunks];
-        int splitMatrixInNRows = 0;
-        int splitMatrixInNColumns = 0;
+        // a prime number of chunks has no factor pair, so it falls back to a single column of chunks
+        int splitMatrixInNRows = numOfChunks;
+        int splitMatrixInNColumns = 1;
 
         for (int i = 2; i <= Math.sqrt(numOfChunks); i++) {
             if (numOfChunks % i == 0) {
@@ -81,11 +93,108 @@ public class DataDecompositionUtils {
         return result;
     }
 
+    /**
+     * Splits the chunk into a grid of square-ish tiles whose cuts fall on multiples of {@link #TILE_SIZE} whenever the
+     * chunk is large enough, returned in Z-order so that neighbouring tasks work on neighbouring tiles.
+     * Any number of chunks is accepted, the bands of the grid get one column more or less when it is not a product of
+     * two factors. A number of chunks of 0 or less gives one chunk per {@link #TILE_SIZE} tile.
+     */
+    private static ChunkBoundaries[] splitIntoTiles(ChunkBoundaries boundaries, int numOfChunks) {
+        int mLength = boundaries.upperBoundM() - boundaries.lowerBoundM() + 1;
+        int nLength = boundaries.upperBoundN() - boundaries.lowerBoundN() + 1;
+
+        int[] bandCuts;
+        int[] columnsPerBand;
+        if (numOfChunks <= 0) {
+            bandCuts = tileCuts(boundaries.lowerBoundN(), boundaries.upperBoundN());
+            columnsPerBand = null;
+        } else {
+            // as many bands as make the tiles square for the aspect ratio of the chunk
+            int bands = (int) Math.round(Math.sqrt((double) numOfChunks * nLength / mLength));
+            bands = Math.max(1, Math.min(numOfChunks, bands));
+            bandCuts = evenCuts(boundaries.lowerBoundN(), nLength, bands);
+            columnsPerBand = new int[bands];
+            for (int band = 0; band < bands; band++) {
+                columnsPerBand[band] = numOfChunks / bands + (band < numOfChunks % bands ? 1 : 0);
+            }
+        }
+
+        List<ChunkBoundaries> tiles = new ArrayList<>();
+        List<Long> codes = new ArrayList<>();
+        for (int band = 0; band < bandCuts.length - 1; band++) {
+            int[] columnCuts = columnsPerBand == null
+                    ? tileCuts(boundaries.lowerBoundM(), boundaries.upperBoundM())
+                    : evenCuts(boundaries.lowerBoundM(), mLength, columnsPerBand[band]);
+            for (int column = 0; column < columnCuts.length - 1; column++) {
+                tiles.add(new ChunkBoundaries(columnCuts[column], columnCuts[column + 1] - 1, bandCuts[band], bandCuts[band + 1] - 1));
+                codes.add(mortonCode(column, band));
+            }
+        }
+
+        Integer[] order = new Integer[tiles.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(codes::get));
+
+        ChunkBoundaries[] result = new ChunkBoundaries[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = tiles.get(order[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Splits a length into parts of about the same size, the inner cuts are moved to the nearest multiple of
+     * {@link #TILE_SIZE} when every part is at least a tile long. The result has the start of every part followed by the
+     * end of the last part plus one.
+     */
+    private static int[] evenCuts(int lowerBound, int length, int parts) {
+        boolean aligned = length >= parts * TILE_SIZE;
+        int[] cuts = new int[parts + 1];
+        for (int i = 0; i <= parts; i++) {
+            int cut = lowerBound + (int) ((long) length * i / parts);
+            if (aligned && i > 0 && i < parts) {
+                cut = Math.round(cut / (float) TILE_SIZE) * TILE_SIZE;
+            }
+            cuts[i] = cut;
+        }
+        return cuts;
+    }
+
+    /**
+     * Cuts a range at every multiple of {@link #TILE_SIZE}.
+     */
+    private static int[] tileCuts(int lowerBound, int upperBound) {
+        int first = (lowerBound / TILE_SIZE + 1) * TILE_SIZE;
+        int inner = first > upperBound ? 0 : (upperBound - first) / TILE_SIZE + 1;
+        int[] cuts = new int[inner + 2];
+        cuts[0] = lowerBound;
+        for (int i = 0; i < inner; i++) {
+            cuts[i + 1] = first + i * TILE_SIZE;
+        }
+        cuts[inner + 1] = upperBound + 1;
+        return cuts;
+    }
+
+    /**
+     * Interleaves the bits of the tile coordinates, sorting by this code visits the tiles in Z-order.
+     */
+    private static long mortonCode(int column, int band) {
+        long code = 0;
+        for (int bit = 0; bit < 31; bit++) {
+            code |= ((long) (column >> bit) & 1) << (2 * bit);
+            code |= ((long) (band >> bit) & 1) << (2 * bit + 1);
+        }
+        return code;
+    }
+
     public static ChunkBoundaries[] getChunksOf(ChunkBoundaries boundaries, int numOfChunks, ImageDivisionEnum imageDivision) {
         return switch (imageDivision) {
             case VERTICAL -> splitIntoVerticalChunks(boundaries, numOfChunks);
             case HORIZONTAL -> splitIntoHorizontalChunks(boundaries, numOfChunks);
             case RECTANGULAR -> splitIntoRectangularChunks(boundaries, numOfChunks);
+            case TILED -> splitIntoTiles(boundaries, numOfChunks);
         };
     }
 }
\ No newline at end of file
@@ -0,0 +1,172 @@
+package utils;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What an execution engine did, to see why an engine is faster than another and not only that it is: the latency
+ * and size of the leaf tasks (the ones that run the filter), the depth of the queue of the pool when a leaf task
+ * starts, the tasks stolen by the fork-join workers, the time the workers had nothing to do and the garbage
+ * collections during the executions.
+ * <p>
+ * Everything is recorded with {@link LongAdder}s and {@link Histogram}s, so the workers never contend on a lock and
+ * several executions can be recorded at the same time. The values only grow, the ones of a run are the
+ * difference between the {@link #snapshot()}s taken around it.
+ */
+public class EngineMetrics {
+
+    /**
+     * The names of the columns of {@link Snapshot#toCsv()}.
+     */
+    public static final String CSV_HEADER = "Executions;Tasks;Task p50(us);Task p99(us);Task max(us);"
+            + "Chunk p50(px);Chunk max(px);Steals;Queue depth p50;Queue depth max;Idle time(ms);GC pauses;GC time(ms)";
+
+    private static final List<GarbageCollectorMXBean> COLLECTORS = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private final LongAdder executions = new LongAdder();
+    private final Histogram taskNanos = new Histogram();
+    private final Histogram taskPixels = new Histogram();
+    private final Histogram queueDepth = new Histogram();
+    private final LongAdder steals = new LongAdder();
+    private final LongAdder idleNanos = new LongAdder();
+    private final LongAdder gcPauses = new LongAdder();
+    private final LongAdder gcMillis = new LongAdder();
+
+    /**
+     * Starts recording an execution.
+     */
+    public Execution begin() {
+        return new Execution();
+    }
+
+    /**
+     * One execution of a filter over an image, its tasks can record from any thread.
+     */
+    public final class Execution {
+
+        private final long startNanos = System.nanoTime();
+        private final long startGcPauses = gcPauses();
+        private final long startGcMillis = gcMillis();
+        private final LongAdder busyNanos = new LongAdder();
+
+        private Execution() {
+        }
+
+        /**
+         * Records a leaf task.
+         *
+         * @param pixels the number of pixels of its chunk.
+         * @param nanos  the time it took.
+         */
+        public void recordTask(long pixels, long nanos) {
+            taskNanos.record(nanos);
+            taskPixels.record(pixels);
+            busyNanos.add(nanos);
+        }
+
+        /**
+         * Records the number of tasks waiting in the queue of the pool when a leaf task starts.
+         */
+        public void recordQueueDepth(long depth) {
+            queueDepth.record(depth);
+        }
+
+        /**
+         * Ends the execution, once its tasks are done.
+         *
+         * @param workers the number of threads that ran the tasks, the time they were not running one is idle
+         *                time. 0 when the threads are shared with other work and their idle time is unknown.
+         * @param stolen  the number of tasks stolen by the workers during the execution.
+         */
+        public void end(int workers, long stolen) {
+            long wallNanos = System.nanoTime() - startNanos;
+            executions.increment();
+            steals.add(stolen);
+            if (workers > 0) {
+                idleNanos.add(Math.max(0, workers * wallNanos - busyNanos.sum()));
+            }
+            // the collections of the whole JVM, they also stop the tasks of the other executions
+            gcPauses.add(gcPauses() - startGcPauses);
+            gcMillis.add(gcMillis() - startGcMillis);
+        }
+    }
+
+    /**
+     * Gets the values recorded so far.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(executions.sum(), taskNanos.snapshot(), taskPixels.snapshot(), queueDepth.snapshot(),
+                steals.sum(), idleNanos.sum(), gcPauses.sum(), gcMillis.sum());
+    }
+
+    /**
+     * The values recorded at some point, or between two points with {@link #since}.
+     */
+    public record Snapshot(long executions, Histogram.Snapshot taskNanos, Histogram.Snapshot taskPixels,
+                           Histogram.Snapshot queueDepth, long steals, long idleNanos, long gcPauses, long gcMillis) {
+
+        public Snapshot since(Snapshot earlier) {
+            return new Snapshot(executions - earlier.executions, taskNanos.since(earlier.taskNanos),
+                    taskPixels.since(earlier.taskPixels), queueDepth.since(earlier.queueDepth), steals - earlier.steals,
+                    idleNanos - earlier.idleNanos, gcPauses - earlier.gcPauses, gcMillis - earlier.gcMillis);
+        }
+
+        /**
+         * Gets the values separated by semicolons, in the order of {@link #CSV_HEADER}.
+         */
+        public String toCsv() {
+            return String.join(";", values());
+        }
+
+        public String toJson() {
+            String[] names = CSV_HEADER.split(";");
+            String[] values = values();
+            StringBuilder json = new StringBuilder("{");
+            for (int i = 0; i < names.length; i++) {
+                json.append(i > 0 ? ", " : "").append('"').append(names[i]).append("\": ").append(values[i]);
+            }
+            return json.append("}").toString();
+        }
+
+        private String[] values() {
+            return new String[]{
+                    String.valueOf(executions),
+                    String.valueOf(taskNanos.count()),
+                    micros(taskNanos.percentile(50)),
+                    micros(taskNanos.percentile(99)),
+                    micros(taskNanos.max()),
+                    String.valueOf(taskPixels.percentile(50)),
+                    String.valueOf(taskPixels.max()),
+                    String.valueOf(steals),
+                    String.valueOf(queueDepth.percentile(50)),
+                    String.valueOf(queueDepth.max()),
+                    String.valueOf(idleNanos / 1000000),
+                    String.valueOf(gcPauses),
+                    String.valueOf(gcMillis)
+            };
+        }
+
+        private static String micros(long nanos) {
+            return String.format(Locale.ROOT, "%.1f", nanos / 1000.0);
+        }
+    }
+
+    private static long gcPauses() {
+        long pauses = 0;
+        for (var collector : COLLECTORS) {
+            pauses += Math.max(0, collector.getCollectionCount());
+        }
+        return pauses;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (var collector : COLLECTORS) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+}
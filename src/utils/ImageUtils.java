@@ -1,14 +1,32 @@
 package utils;
 
+import models.PixelBuffer;
+
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 public class ImageUtils {
 
-    ImageUtils() {
+    private ImageUtils() {
     }
 
     /**
@@ -22,6 +40,102 @@ public class ImageUtils {
         return convertTo2DFromBuffered(buffImg);
     }
 
+    /**
+     * Loads image from filename into a packed pixel buffer.
+     *
+     * @param filename the name of the image in the filesystem.
+     * @return the pixel buffer.
+     */
+    public static PixelBuffer loadPixels(String filename) {
+        BufferedImage buffImg = loadImageFile(filename);
+        return convertToBufferFromBuffered(buffImg);
+    }
+
+    /**
+     * Loads image from filename into a packed pixel buffer, failing with an exception instead of exiting, for
+     * callers that go on with other images.
+     *
+     * @param filename the name of the image in the filesystem.
+     * @return the pixel buffer.
+     * @throws IOException if the file cannot be read or decoded.
+     */
+    public static PixelBuffer readPixels(String filename) throws IOException {
+        BufferedImage buffImg = ImageIO.read(new File(filename));
+        if (buffImg == null) {
+            throw new IOException("No reader for " + filename);
+        }
+        return convertToBufferFromBuffered(buffImg);
+    }
+
+    /**
+     * Reads the size of an image from its header, without decoding the pixels.
+     *
+     * @param filename the name of the image in the filesystem.
+     * @return the width and height of the image.
+     * @throws IOException if the file cannot be read or is not an image.
+     */
+    public static Dimension sizeOf(String filename) throws IOException {
+        return sizeOf(ImageIO.createImageInputStream(new File(filename)), filename);
+    }
+
+    /**
+     * Reads the size of an encoded image from its header, without decoding the pixels.
+     *
+     * @param encoded the bytes of the image, in any format ImageIO can read.
+     * @return the width and height of the image.
+     * @throws IOException if the bytes are not an image.
+     */
+    public static Dimension sizeOf(byte[] encoded) throws IOException {
+        return sizeOf(ImageIO.createImageInputStream(new ByteArrayInputStream(encoded)), "the image");
+    }
+
+    /**
+     * Decodes an image held in memory into a packed pixel buffer.
+     *
+     * @param encoded the bytes of the image, in any format ImageIO can read.
+     * @return the pixel buffer.
+     * @throws IOException if the bytes are not an image.
+     */
+    public static PixelBuffer decodePixels(byte[] encoded) throws IOException {
+        BufferedImage buffImg = ImageIO.read(new ByteArrayInputStream(encoded));
+        if (buffImg == null) {
+            throw new IOException("No reader for the image");
+        }
+        return convertToBufferFromBuffered(buffImg);
+    }
+
+    /**
+     * Encodes a pixel buffer in memory.
+     *
+     * @param image  the pixel buffer.
+     * @param format the informal name of the format, e.g. "jpg" or "png".
+     * @return the bytes of the encoded image.
+     * @throws IOException if there is no writer for the format.
+     */
+    public static byte[] encode(PixelBuffer image, String format) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        if (!ImageIO.write(pixelsToBuffered(image), format, output)) {
+            throw new IOException("No writer for " + format);
+        }
+        return output.toByteArray();
+    }
+
+    private static Dimension sizeOf(ImageInputStream stream, String name) throws IOException {
+        try (ImageInputStream input = stream) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("No reader for " + name);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
     /**
      * Converts image from a Color matrix to a .jpg file.
      *
@@ -29,10 +143,18 @@ public class ImageUtils {
      * @param filename to the image.
      */
     public static void writeImage(Color[][] image, String filename) {
-        File outputfile = new File(filename);
-        var bufferedImage = ImageUtils.matrixToBuffered(image);
+        writeImage(PixelBuffer.fromColors(image), filename);
+    }
+
+    /**
+     * Converts image from a pixel buffer to a .jpg file.
+     *
+     * @param image    the pixel buffer.
+     * @param filename to the image.
+     */
+    public static void writeImage(PixelBuffer image, String filename) {
         try {
-            ImageIO.write(bufferedImage, "jpg", outputfile);
+            writePixels(image, filename);
         } catch (IOException e) {
             System.out.println("Could not write image " + filename + " !");
             e.printStackTrace();
@@ -40,6 +162,22 @@ public class ImageUtils {
         }
     }
 
+    /**
+     * Converts image from a pixel buffer to a .jpg file, failing with an exception instead of exiting, for
+     * callers that go on with other images.
+     *
+     * @param image    the pixel buffer.
+     * @param filename to the image.
+     * @throws IOException if the file cannot be encoded or written.
+     */
+    public static void writePixels(PixelBuffer image, String filename) throws IOException {
+        try (OutputStream output = Files.newOutputStream(Path.of(filename))) {
+            if (!ImageIO.write(pixelsToBuffered(image), "jpg", output)) {
+                throw new IOException("No writer for " + filename);
+            }
+        }
+    }
+
     /**
      * Loads in a BufferedImage from the specified path to be processed.
      *
@@ -76,23 +214,92 @@ public class ImageUtils {
     }
 
     /**
-     * Converts a matrix of Colors into a BufferedImage to
-     * write on the filesystem.
+     * Copy a pixel buffer to another pixel buffer.
+     * Useful if one does not want to modify the original image.
+     *
+     * @param image the source buffer
+     * @return a copy of the image
+     */
+    public static PixelBuffer copyImage(PixelBuffer image) {
+        return image.copy();
+    }
+
+    /**
+     * Wraps a pixel buffer into a BufferedImage to
+     * write on the filesystem, the image shares the pixel array instead of copying it.
      *
-     * @param image the matrix of Colors
+     * @param image the pixel buffer
      * @return the image ready for writing to filesystem
      */
-    private static BufferedImage matrixToBuffered(Color[][] image) {
-        int width = image.length;
-        int height = image[0].length;
-        BufferedImage bImg = new BufferedImage(width, height, 1);
+    private static BufferedImage pixelsToBuffered(PixelBuffer image) {
+        DirectColorModel colorModel = new DirectColorModel(24, 0xFF0000, 0x00FF00, 0x0000FF);
+        DataBufferInt dataBuffer = new DataBufferInt(image.pixels(), image.pixels().length);
+        WritableRaster raster = Raster.createPackedRaster(dataBuffer, image.width(), image.height(), image.width(),
+                colorModel.getMasks(), null);
+        return new BufferedImage(colorModel, raster, false, null);
+    }
 
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                bImg.setRGB(x, y, image[x][y].getRGB());
-            }
+    /**
+     * Converts a file loaded into a BufferedImage to a
+     * packed pixel buffer. The usual RGB layouts are read straight from the backing array of the raster, in
+     * parallel over bands of rows, any other layout goes through the colour model a row at a time.
+     *
+     * @param image the BufferedImage to convert
+     * @return the pixel buffer
+     */
+    private static PixelBuffer convertToBufferFromBuffered(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        PixelBuffer result = new PixelBuffer(width, height);
+        int[] pixels = result.pixels();
+        WritableRaster raster = image.getRaster();
+        int translateX = -raster.getSampleModelTranslateX();
+        int translateY = -raster.getSampleModelTranslateY();
+
+        if ((image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB)
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel
+                && raster.getDataBuffer() instanceof DataBufferInt dataBuffer) {
+            int[] data = dataBuffer.getData();
+            int stride = sampleModel.getScanlineStride();
+            int offset = dataBuffer.getOffset() + translateY * stride + translateX;
+            ParallelRows.forEach(width, height, (firstRow, endRow) -> {
+                for (int y = firstRow; y < endRow; y++) {
+                    int src = offset + y * stride;
+                    int dst = y * width;
+                    for (int x = 0; x < width; x++) {
+                        // the alpha byte is dropped
+                        pixels[dst + x] = data[src + x] & 0xFFFFFF;
+                    }
+                }
+            });
+        } else if ((image.getType() == BufferedImage.TYPE_3BYTE_BGR || image.getType() == BufferedImage.TYPE_4BYTE_ABGR)
+                && raster.getSampleModel() instanceof ComponentSampleModel sampleModel
+                && raster.getDataBuffer() instanceof DataBufferByte dataBuffer) {
+            byte[] data = dataBuffer.getData();
+            int stride = sampleModel.getScanlineStride();
+            int pixelStride = sampleModel.getPixelStride();
+            int[] bandOffsets = sampleModel.getBandOffsets();
+            int offset = dataBuffer.getOffset() + translateY * stride + translateX * pixelStride;
+            ParallelRows.forEach(width, height, (firstRow, endRow) -> {
+                for (int y = firstRow; y < endRow; y++) {
+                    int src = offset + y * stride;
+                    int dst = y * width;
+                    for (int x = 0; x < width; x++, src += pixelStride) {
+                        pixels[dst + x] = PixelBuffer.rgb(data[src + bandOffsets[0]] & 0xFF,
+                                data[src + bandOffsets[1]] & 0xFF, data[src + bandOffsets[2]] & 0xFF);
+                    }
+                }
+            });
+        } else {
+            // other layouts (gray, indexed, 16 bit) need the colour model conversion of getRGB
+            ParallelRows.forEach(width, height, (firstRow, endRow) -> {
+                image.getRGB(0, firstRow, width, endRow - firstRow, pixels, firstRow * width, width);
+                for (int i = firstRow * width; i < endRow * width; i++) {
+                    pixels[i] &= 0xFFFFFF;
+                }
+            });
         }
-        return bImg;
+        return result;
     }
 
     /**
@@ -102,25 +309,8 @@ public class ImageUtils {
      * @param image the BufferedImage to convert
      * @return the matrix of Colors
      */
-
     private static Color[][] convertTo2DFromBuffered(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        Color[][] result = new Color[width][height];
-
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                // Get the integer RGB, and separate it into individual components.
-                // (BufferedImage saves RGB as a single integer value).
-                int pixel = image.getRGB(x, y);
-                //int alpha = (pixel >> 24) & 0xFF;
-                int red = (pixel >> 16) & 0xFF;
-                int green = (pixel >> 8) & 0xFF;
-                int blue = pixel & 0xFF;
-                result[x][y] = new Color(red, green, blue);
-            }
-        }
-        return result;
+        return convertToBufferFromBuffered(image).toColors();
     }
 
-}
\ No newline at end of file
+}
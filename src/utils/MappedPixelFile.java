@@ -0,0 +1,166 @@
+package utils;
+
+import models.PixelBuffer;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Image kept in a raw scratch file and memory-mapped, with the same layout as a {@link PixelBuffer}: packed RGB
+ * ints in row-major order. The pixels live in the page cache instead of the heap, so images larger than the heap
+ * can be loaded, filtered strip by strip and written.
+ * <p>
+ * The file is mapped in segments of whole rows because a single mapping is limited to 2 GiB.
+ */
+public class MappedPixelFile implements AutoCloseable {
+
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private final int width;
+    private final int height;
+    private final int rowsPerSegment;
+    private final IntBuffer[] segments;
+    private final Path path;
+
+    private MappedPixelFile(int width, int height, Path path) throws IOException {
+        this.width = width;
+        this.height = height;
+        this.path = path;
+        this.rowsPerSegment = (int) Math.max(1, Math.min(height, MAX_SEGMENT_BYTES / (4L * width)));
+        this.segments = new IntBuffer[(height + rowsPerSegment - 1) / rowsPerSegment];
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw"); FileChannel channel = file.getChannel()) {
+            file.setLength(4L * width * height);
+            for (int i = 0; i < segments.length; i++) {
+                int rows = Math.min(rowsPerSegment, height - i * rowsPerSegment);
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, 4L * width * i * rowsPerSegment, 4L * width * rows)
+                        .asIntBuffer();
+            }
+        }
+    }
+
+    /**
+     * Creates a scratch file for an image, it is deleted when closed.
+     *
+     * @param width  the width of the image.
+     * @param height the height of the image.
+     * @return the mapped image, every pixel is black.
+     */
+    public static MappedPixelFile create(int width, int height) {
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid image size " + width + "x" + height);
+        }
+        try {
+            Path path = Files.createTempFile("pixels", ".raw");
+            path.toFile().deleteOnExit();
+            return new MappedPixelFile(width, height, path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create the scratch file", e);
+        }
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int get(int x, int y) {
+        return segments[y / rowsPerSegment].get((y % rowsPerSegment) * width + x);
+    }
+
+    public void set(int x, int y, int rgb) {
+        segments[y / rowsPerSegment].put((y % rowsPerSegment) * width + x, rgb);
+    }
+
+    /**
+     * Copies rows of the image to the heap.
+     *
+     * @param firstRow the first row to copy.
+     * @param rows     the number of rows.
+     * @return a pixel buffer with the rows.
+     */
+    public PixelBuffer readRows(int firstRow, int rows) {
+        PixelBuffer strip = new PixelBuffer(width, rows);
+        for (int y = 0; y < rows; y++) {
+            int row = firstRow + y;
+            segments[row / rowsPerSegment].get((row % rowsPerSegment) * width, strip.pixels(), y * width, width);
+        }
+        return strip;
+    }
+
+    /**
+     * Copies rows of a strip into the image.
+     *
+     * @param firstRow      the row of the image that receives the first copied row.
+     * @param strip         the strip to copy from, as wide as the image.
+     * @param firstStripRow the first row of the strip to copy.
+     * @param rows          the number of rows.
+     */
+    public void writeRows(int firstRow, PixelBuffer strip, int firstStripRow, int rows) {
+        if (strip.width() != width) {
+            throw new IllegalArgumentException("The strip is not as wide as the image");
+        }
+        for (int y = 0; y < rows; y++) {
+            int row = firstRow + y;
+            segments[row / rowsPerSegment].put((row % rowsPerSegment) * width, strip.pixels(), (firstStripRow + y) * width, width);
+        }
+    }
+
+    /**
+     * Gets a view of the file as an RGB BufferedImage, reading or writing it goes straight to the mapped pixels, so
+     * ImageIO can decode into it and encode from it without a copy on the heap.
+     *
+     * @return the image backed by the file.
+     */
+    public BufferedImage asBufferedImage() {
+        DirectColorModel colorModel = new DirectColorModel(24, 0xFF0000, 0x00FF00, 0x0000FF);
+        SinglePixelPackedSampleModel sampleModel = new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width, height,
+                colorModel.getMasks());
+        WritableRaster raster = Raster.createWritableRaster(sampleModel, new MappedDataBuffer(), new Point(0, 0));
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+
+    @Override
+    public void close() {
+        // the mappings are released by the garbage collector, the file can already be unlinked on most systems
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // deleted on exit instead
+        }
+    }
+
+    private class MappedDataBuffer extends DataBuffer {
+
+        MappedDataBuffer() {
+            super(DataBuffer.TYPE_INT, width * height);
+        }
+
+        @Override
+        public int getElem(int bank, int i) {
+            int segment = i / width / rowsPerSegment;
+            return segments[segment].get(i - segment * rowsPerSegment * width);
+        }
+
+        @Override
+        public void setElem(int bank, int i, int val) {
+            int segment = i / width / rowsPerSegment;
+            segments[segment].put(i - segment * rowsPerSegment * width, val & 0xFFFFFF);
+        }
+    }
+}
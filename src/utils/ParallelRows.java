@@ -0,0 +1,52 @@
+package utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits the rows of an image in halves in the common fork-join pool until a band of rows has at most
+ * {@link #MIN_PIXELS} pixels and runs an operation over every band.
+ */
+public class ParallelRows extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+    private static final int MIN_PIXELS = 1 << 16;
+
+    public interface RowRange {
+        void apply(int firstRow, int endRow);
+    }
+
+    private final int width;
+    private final int firstRow;
+    private final int endRow;
+    private final RowRange operation;
+
+    private ParallelRows(int width, int firstRow, int endRow, RowRange operation) {
+        this.width = width;
+        this.firstRow = firstRow;
+        this.endRow = endRow;
+        this.operation = operation;
+    }
+
+    /**
+     * Runs the operation over the rows of an image and waits for it.
+     *
+     * @param width     the width of the image.
+     * @param height    the height of the image.
+     * @param operation called with the first row of a band and the row after its last.
+     */
+    public static void forEach(int width, int height, RowRange operation) {
+        ForkJoinPool.commonPool().invoke(new ParallelRows(width, 0, height, operation));
+    }
+
+    @Override
+    protected void compute() {
+        int rows = endRow - firstRow;
+        if (rows < 2 || (long) rows * width <= MIN_PIXELS) {
+            operation.apply(firstRow, endRow);
+        } else {
+            int middle = firstRow + rows / 2;
+            invokeAll(new ParallelRows(width, firstRow, middle, operation), new ParallelRows(width, middle, endRow, operation));
+        }
+    }
+}
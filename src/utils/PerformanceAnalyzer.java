@@ -5,60 +5,188 @@ import models.ImageDivisionEnum;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Times runs and saves one row per run, as CSV or JSON.
+ * <p>
+ * Every thread times its own run, from {@code start} to {@code stop}, so runs on different threads can overlap.
+ * The rows are saved in the order they were closed, a row stopped with {@link #stopWhenWritten} is only complete
+ * once the output is written.
+ */
 public class PerformanceAnalyzer {
 
-    private long startTime;
-    private long endTime;
-    private boolean isCounting;
-    private final StringBuilder CSVBuilder = new StringBuilder();
+    // the end-to-end time of a row whose output could not be written
+    private static final String WRITE_FAILED = "write failed";
+
+    /**
+     * The row being timed by a thread.
+     */
+    private static final class Run {
+        private final String columns;
+        private final StringBuilder extraColumns = new StringBuilder();
+        private final long startTime = System.nanoTime();
+        private long endTime;
+        private boolean isCounting = true;
+        private boolean isWaitingForOutput;
+
+        private Run(String columns) {
+            this.columns = columns;
+        }
+    }
+
+    private final ThreadLocal<Run> currentRun = new ThreadLocal<>();
+    // every row in the order it was closed, the ones whose output is being written complete later
+    private final List<CompletableFuture<String>> rows = new ArrayList<>();
 
 
     public void start(String method, String image, String filter) {
-        CSVBuilder.append(method).append(";").append(image).append(";").append(filter).append(";");
-        isCounting = true;
-        startTime = System.nanoTime();
+        currentRun.set(new Run(method + ";" + image + ";" + filter + ";"));
     }
 
     public void start(String method, String image, String filter, ImageDivisionEnum division, int val1) {
-        CSVBuilder.append(method).append(";").append(image).append(";").append(filter).append(";").append(division)
-                .append(";").append(val1).append(";");
-        System.out.println(CSVBuilder);
-        isCounting = true;
-        startTime = System.nanoTime();
+        currentRun.set(new Run(method + ";" + image + ";" + filter + ";" + division + ";" + val1 + ";"));
     }
 
     public void start(String method, String image, String filter, ImageDivisionEnum division, int val1, int val2) {
-        CSVBuilder.append(method).append(";").append(image).append(";").append(filter).append(";").append(division)
-                .append(";").append(val1).append(";").append(val2).append(";");
-        System.out.println(CSVBuilder);
-        isCounting = true;
-        startTime = System.nanoTime();
+        currentRun.set(new Run(method + ";" + image + ";" + filter + ";" + division + ";" + val1 + ";" + val2 + ";"));
+    }
+
+    /**
+     * Adds a column to the current row, after the ones given when it was started and before the times.
+     */
+    public void column(Object value) {
+        Run run = currentRun.get();
+        if (run == null || (!run.isCounting && !run.isWaitingForOutput)) {
+            throw new RuntimeException("the chronometer has not been started");
+        }
+        run.extraColumns.append(value).append(";");
     }
 
     public void stop() {
-        if (isCounting) {
-            this.isCounting = false;
-            endTime = System.nanoTime();
-            CSVBuilder.append(this.getElapsedTimeMillis()).append("\n");
+        Run run = currentRun.get();
+        if (run != null && run.isCounting) {
+            run.isCounting = false;
+            run.endTime = System.nanoTime();
+            addRow(CompletableFuture.completedFuture(run.columns + run.extraColumns + getElapsedTimeMillis() + "\n"));
+        } else {
+            throw new RuntimeException("the chronometer has not been started");
+        }
+    }
+
+    /**
+     * Stops the chronometer once the filter is done, while its output has not been written yet.
+     * The row is closed by {@link #stopWhenWritten}.
+     */
+    public void stopFilter() {
+        Run run = currentRun.get();
+        if (run != null && run.isCounting) {
+            run.isCounting = false;
+            run.isWaitingForOutput = true;
+            run.endTime = System.nanoTime();
         } else {
             throw new RuntimeException("the chronometer has not been started");
         }
     }
 
+    /**
+     * Closes a row stopped with {@link #stopFilter} with two times: the filter latency and the end-to-end latency,
+     * from the start of the job to the moment its output was written. The row is saved once the output is written,
+     * with {@value #WRITE_FAILED} instead of the end-to-end latency if it could not be written.
+     *
+     * @param writtenAt completed with the {@link System#nanoTime()} at which the output was written.
+     */
+    public void stopWhenWritten(CompletableFuture<Long> writtenAt) {
+        Run run = currentRun.get();
+        if (run == null || !run.isWaitingForOutput) {
+            throw new RuntimeException("the filter chronometer has not been stopped");
+        }
+        run.isWaitingForOutput = false;
+        String row = run.columns + run.extraColumns;
+        long filterMillis = getElapsedTimeMillis();
+        long jobStart = run.startTime;
+        addRow(writtenAt.handle((doneAt, error) -> row + filterMillis + ";"
+                + (error == null ? String.valueOf((doneAt - jobStart) / 1000000) : WRITE_FAILED) + "\n"));
+    }
+
     public void save(String CSVPath) {
-        try (PrintWriter CSVWriter = new PrintWriter(new FileWriter(CSVPath, false))) {
-            CSVWriter.write(CSVBuilder.toString());
-        } catch (IOException e) {
-            System.err.println("IO operation error while saving the logs, error : " + e.getMessage());
+        write(CSVPath, csv());
+    }
+
+    /**
+     * Saves the rows as a JSON array with one object per row, named after the CSV headers.
+     */
+    public void saveJson(String JSONPath) {
+        String[] lines = csv().split("\n");
+        String[] names = lines[0].split(";");
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = 1; i < lines.length; i++) {
+            String[] values = lines[i].split(";");
+            json.append("  {");
+            for (int j = 0; j < Math.min(names.length, values.length); j++) {
+                json.append(j > 0 ? ", " : "").append(quoted(names[j].trim())).append(": ").append(jsonValue(values[j].trim()));
+            }
+            json.append(i < lines.length - 1 ? "},\n" : "}\n");
         }
+        write(JSONPath, json.append("]\n").toString());
     }
 
+    /**
+     * Gets the time of the run last stopped by the current thread.
+     */
     public long getElapsedTimeMillis() {
-        return (endTime - startTime) / 1000000;
+        Run run = currentRun.get();
+        return run == null ? 0 : (run.endTime - run.startTime) / 1000000;
     }
 
     public void csvHeaders(String content) {
-        CSVBuilder.append(content);
+        addRow(CompletableFuture.completedFuture(content));
+    }
+
+    public void row(Object... values) {
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            row.append(values[i]).append(i < values.length - 1 ? ";" : "\n");
+        }
+        addRow(CompletableFuture.completedFuture(row.toString()));
+    }
+
+    private void addRow(CompletableFuture<String> row) {
+        synchronized (rows) {
+            rows.add(row);
+        }
+    }
+
+    /**
+     * Gets every row, waiting for the outputs that are still being written.
+     */
+    private String csv() {
+        List<CompletableFuture<String>> closedRows;
+        synchronized (rows) {
+            closedRows = new ArrayList<>(rows);
+        }
+        StringBuilder CSVBuilder = new StringBuilder();
+        for (var row : closedRows) {
+            CSVBuilder.append(row.join());
+        }
+        return CSVBuilder.toString();
+    }
+
+    private static void write(String path, String content) {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(path, false))) {
+            writer.write(content);
+        } catch (IOException e) {
+            System.err.println("IO operation error while saving the logs, error : " + e.getMessage());
+        }
+    }
+
+    private static String jsonValue(String value) {
+        return value.matches("-?\\d+(\\.\\d+)?") ? value : quoted(value);
+    }
+
+    private static String quoted(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
     }
 }
@@ -0,0 +1,148 @@
+package utils;
+
+import filters.Filter;
+import models.PixelBuffer;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Reusable output images, so that the runs of the drivers do not allocate and copy a new output every time.
+ * <p>
+ * At most {@code buffersPerSize} buffers of each size exist at a time, two being the classic ping-pong: one is
+ * filtered into while the other is written. Asking for one more waits until a buffer is released, which also
+ * bounds how far the filters run ahead of the writer. The free buffers of the sizes not asked for lately are dropped,
+ * the least recently asked for first, so that the pool does not hold an image of every size it has seen: by default
+ * only the ones of the size asked for last are kept.
+ */
+public class PixelBufferPool {
+
+    private record Size(int width, int height) {
+    }
+
+    private static final class Slot {
+        private final Deque<PixelBuffer> free = new ArrayDeque<>();
+        private int inUse;
+        // the threads waiting in acquire for a buffer of that size, the slot must stay in the pool for them
+        private int waiting;
+    }
+
+    private final int buffersPerSize;
+    private final long maxFreePixels;
+    // in the order the sizes were last asked for, so the first slot is the least recently asked for
+    private final Map<Size, Slot> slots = new LinkedHashMap<>();
+    private Slot lastAsked;
+    private long freePixels = 0;
+
+    public PixelBufferPool(int buffersPerSize) {
+        this(buffersPerSize, 0);
+    }
+
+    /**
+     * @param buffersPerSize the number of buffers of a size that can be in use at a time.
+     * @param maxFreePixels  the number of pixels of the free buffers kept besides the ones of the size asked for
+     *                       last, e.g. to serve images of a few sizes in turn.
+     */
+    public PixelBufferPool(int buffersPerSize, long maxFreePixels) {
+        if (buffersPerSize <= 0 || maxFreePixels < 0) {
+            throw new IllegalArgumentException("Invalid number of buffers per size or of free pixels");
+        }
+        this.buffersPerSize = buffersPerSize;
+        this.maxFreePixels = maxFreePixels;
+    }
+
+    /**
+     * Gets a buffer of a size, its content is whatever was last written to it.
+     * Waits for a buffer to be released when all the buffers of that size are in use.
+     */
+    public synchronized PixelBuffer acquire(int width, int height) {
+        Size size = new Size(width, height);
+        Slot slot = slots.remove(size);
+        if (slot == null) {
+            slot = new Slot();
+        }
+        slots.put(size, slot);
+        lastAsked = slot;
+        trim();
+
+        slot.waiting++;
+        try {
+            while (slot.free.isEmpty() && slot.inUse >= buffersPerSize) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for an output buffer", e);
+        } finally {
+            slot.waiting--;
+        }
+        slot.inUse++;
+        PixelBuffer buffer = slot.free.poll();
+        if (buffer == null) {
+            return new PixelBuffer(width, height);
+        }
+        freePixels -= (long) width * height;
+        return buffer;
+    }
+
+    /**
+     * Gets a buffer ready to be filtered into from an input image: the pixels the filter does not write are copied
+     * from the input, none for the filters that write every pixel.
+     */
+    public PixelBuffer acquireFor(Filter filter, int amount, PixelBuffer inputImg) {
+        PixelBuffer buffer = acquire(inputImg.width(), inputImg.height());
+        filter.copyUntouched(inputImg, buffer, amount);
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer back to the pool, it must not be used anymore.
+     */
+    public synchronized void release(PixelBuffer buffer) {
+        Slot slot = slots.get(new Size(buffer.width(), buffer.height()));
+        if (slot == null || slot.inUse == 0) {
+            throw new IllegalArgumentException("The buffer does not come from the pool");
+        }
+        slot.inUse--;
+        slot.free.push(buffer);
+        freePixels += (long) buffer.width() * buffer.height();
+        trim();
+        notifyAll();
+    }
+
+    /**
+     * Gives a buffer back to the pool once a task using it is done, e.g. once it is written, whatever its outcome.
+     */
+    public void releaseWhenDone(PixelBuffer buffer, CompletableFuture<?> task) {
+        task.whenComplete((result, error) -> release(buffer));
+    }
+
+    /**
+     * Drops the free buffers of the sizes not asked for last, the least recently asked for first, until they hold
+     * at most {@code maxFreePixels} pixels, and forgets the sizes that are not used anymore. The sizes that a
+     * thread is waiting for keep their free buffers, the waiting thread takes them next.
+     */
+    private void trim() {
+        long keptPixels = 0;
+        for (var entry : slots.entrySet()) {
+            if (entry.getValue() == lastAsked) {
+                keptPixels = (long) entry.getKey().width() * entry.getKey().height() * lastAsked.free.size();
+            }
+        }
+        Iterator<Map.Entry<Size, Slot>> entries = slots.entrySet().iterator();
+        while (entries.hasNext() && freePixels - keptPixels > maxFreePixels) {
+            var entry = entries.next();
+            Slot slot = entry.getValue();
+            if (slot != lastAsked && slot.waiting == 0) {
+                freePixels -= (long) entry.getKey().width() * entry.getKey().height() * slot.free.size();
+                slot.free.clear();
+            }
+        }
+        slots.values().removeIf(slot -> slot != lastAsked && slot.inUse == 0 && slot.free.isEmpty()
+                && slot.waiting == 0);
+    }
+}
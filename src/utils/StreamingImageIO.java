@@ -0,0 +1,98 @@
+package utils;
+
+import models.PixelBuffer;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Loads and writes images through a {@link MappedPixelFile} so that the heap never holds a whole image.
+ * <p>
+ * The decoder writes straight into the mapped file. When it cannot decode into an RGB destination (e.g. some
+ * indexed or 16 bit PNGs) the image is read in strips of rows with {@link ImageReadParam#setSourceRegion}, which
+ * only keeps one strip on the heap but may decode the rows above the strip again for every strip.
+ * The encoder reads the rows it needs from the mapped file as it goes.
+ */
+public class StreamingImageIO {
+
+    private StreamingImageIO() {
+    }
+
+    /**
+     * Loads an image into a scratch file.
+     *
+     * @param filename    the name of the image in the filesystem.
+     * @param stripHeight the number of rows read at a time when the image has to be read in strips.
+     * @return the mapped image, to be closed by the caller.
+     */
+    public static MappedPixelFile load(String filename, int stripHeight) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new File(filename))) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IIOException("No reader for " + filename);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, false, true);
+                MappedPixelFile image = MappedPixelFile.create(reader.getWidth(0), reader.getHeight(0));
+                try {
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    param.setDestination(image.asBufferedImage());
+                    reader.read(0, param);
+                } catch (IIOException | IllegalArgumentException e) {
+                    readStrips(reader, image, stripHeight);
+                }
+                return image;
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            System.out.println("Could not load image " + filename + " !");
+            e.printStackTrace();
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /**
+     * Writes a mapped image to a .jpg file.
+     *
+     * @param image    the mapped image.
+     * @param filename to the image.
+     */
+    public static void write(MappedPixelFile image, String filename) {
+        try {
+            ImageIO.write(image.asBufferedImage(), "jpg", new File(filename));
+        } catch (IOException e) {
+            System.out.println("Could not write image " + filename + " !");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static void readStrips(ImageReader reader, MappedPixelFile image, int stripHeight) throws IOException {
+        int width = image.width();
+        for (int firstRow = 0; firstRow < image.height(); firstRow += stripHeight) {
+            int rows = Math.min(stripHeight, image.height() - firstRow);
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(0, firstRow, width, rows));
+            BufferedImage strip = reader.read(0, param);
+
+            PixelBuffer pixels = new PixelBuffer(width, rows);
+            strip.getRGB(0, 0, width, rows, pixels.pixels(), 0, width);
+            for (int i = 0; i < pixels.pixels().length; i++) {
+                // the alpha byte is dropped
+                pixels.pixels()[i] &= 0xFFFFFF;
+            }
+            image.writeRows(firstRow, pixels, 0, rows);
+        }
+    }
+}